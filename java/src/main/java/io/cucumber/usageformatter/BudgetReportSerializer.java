@@ -0,0 +1,64 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.usageformatter.DurationBudgets.Limit;
+import io.cucumber.usageformatter.DurationBudgets.Violation;
+import io.cucumber.usageformatter.UsageReport.Statistics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.function.Function;
+
+import static io.cucumber.usageformatter.Durations.formatDuration;
+import static java.lang.System.lineSeparator;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Shows the step definitions that exceed their {@link DurationBudgets}.
+ * <p>
+ * To fail a build on violations, use {@link DurationBudgets#evaluate(UsageReport)}.
+ */
+public final class BudgetReportSerializer implements MessagesToUsageWriter.Serializer {
+    private final SourceReferenceFormatter sourceReferenceFormatter = new SourceReferenceFormatter(Function.identity());
+    private final String[] headers = {"Expression", "Limit", "Actual", "±", "Error", "Budget", "Location"};
+    private final boolean[] leftAlignColumn = {true, true, false, true, false, false, true};
+    private final DurationBudgets budgets;
+
+    public BudgetReportSerializer(DurationBudgets budgets) {
+        this.budgets = requireNonNull(budgets);
+    }
+
+    @Override
+    public void writeValue(Writer writer, UsageReport value) throws IOException {
+        List<Violation> violations = budgets.evaluate(value);
+        if (violations.isEmpty()) {
+            return;
+        }
+
+        StringJoiner joiner = new StringJoiner(lineSeparator(), lineSeparator(), "");
+        joiner.add(violations.size() + " step definition budget(s) exceeded");
+
+        Table table = new Table(headers);
+        for (Violation violation : violations) {
+            Statistics statistics = violation.getStatistics();
+            boolean mean = violation.getLimit() == Limit.MEAN;
+            table.add(
+                    violation.getStepDefinition().getExpression().getSource(),
+                    mean ? "mean" : "sum",
+                    formatDuration(mean ? statistics.getMean() : statistics.getSum()),
+                    mean ? "±" : "",
+                    mean ? formatDuration(statistics.getMoe95()) : "",
+                    formatDuration(violation.getMaximum()),
+                    sourceReferenceFormatter.format(violation.getStepDefinition().getSourceReference()).orElse("")
+            );
+        }
+        joiner.add(TableFormatter.format(table, leftAlignColumn));
+        writer.append(joiner.toString());
+    }
+
+    @Override
+    public MessagesToUsageWriter.Requirements requirements() {
+        return MessagesToUsageWriter.Requirements.statistics();
+    }
+}
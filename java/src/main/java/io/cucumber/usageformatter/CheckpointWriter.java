@@ -0,0 +1,174 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.messages.types.StepDefinition;
+import io.cucumber.messages.types.TestStep;
+import io.cucumber.messages.types.TestStepFinished;
+import io.cucumber.query.Query;
+import io.cucumber.usageformatter.UsageCheckpoint.Entry;
+import org.jspecify.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Accumulates the statistics of each step definition while messages are
+ * written, and periodically writes them to a {@link UsageCheckpoint}.
+ * <p>
+ * A checkpoint is due once per interval. It is written when a message is
+ * written, or by a background thread when no messages are written, e.g.
+ * while a step hangs. The background thread only writes a checkpoint when
+ * something changed. A checkpoint that fails in the background is thrown by
+ * the next update.
+ * <p>
+ * Each checkpoint writes a segment with only the step definitions that
+ * changed. Once there are too many segments, they are compacted into one.
+ */
+final class CheckpointWriter implements Closeable {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Path directory;
+    private final long intervalNanos;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Set<Entry> changed = new LinkedHashSet<>();
+    private final List<Path> segments = new ArrayList<>();
+    private final ScheduledExecutorService scheduler;
+    private long lastCheckpointNanos;
+    private long uses;
+    private @Nullable IOException backgroundFailure;
+
+    CheckpointWriter(Path directory, java.time.Duration interval) {
+        this.directory = requireNonNull(directory);
+        this.intervalNanos = interval.toNanos();
+        this.lastCheckpointNanos = System.nanoTime();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "usage-formatter-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::checkpointInBackground, intervalNanos, intervalNanos, NANOSECONDS);
+    }
+
+    synchronized void update(Envelope envelope, Query query) throws IOException {
+        IOException failure = backgroundFailure;
+        if (failure != null) {
+            backgroundFailure = null;
+            throw failure;
+        }
+        Optional<StepDefinition> stepDefinition = envelope.getStepDefinition();
+        if (stepDefinition.isPresent()) {
+            add(stepDefinition.get());
+        }
+        Optional<TestStepFinished> testStepFinished = envelope.getTestStepFinished();
+        if (testStepFinished.isPresent()) {
+            add(testStepFinished.get(), query);
+        }
+        if (isDue()) {
+            checkpoint();
+        }
+    }
+
+    private boolean isDue() {
+        return System.nanoTime() - lastCheckpointNanos >= intervalNanos;
+    }
+
+    private synchronized void checkpointInBackground() {
+        if (changed.isEmpty() || !isDue()) {
+            return;
+        }
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            backgroundFailure = e;
+        }
+    }
+
+    private void add(StepDefinition stepDefinition) {
+        if (entries.containsKey(stepDefinition.getId())) {
+            return;
+        }
+        Entry entry = new Entry(stepDefinition.getId(), stepDefinition.getPattern(), stepDefinition.getSourceReference());
+        entries.put(stepDefinition.getId(), entry);
+        changed.add(entry);
+    }
+
+    private void add(TestStepFinished testStepFinished, Query query) {
+        Optional<List<String>> stepDefinitionIds = query.findTestStepBy(testStepFinished)
+                .flatMap(TestStep::getStepDefinitionIds);
+        // Consistent with the report, ambiguous steps are not represented
+        if (stepDefinitionIds.isEmpty() || stepDefinitionIds.get().size() != 1) {
+            return;
+        }
+        Entry entry = entries.get(stepDefinitionIds.get().get(0));
+        if (entry == null) {
+            return;
+        }
+        entry.add(Durations.toNanos(testStepFinished.getTestStepResult().getDuration()), uses++);
+        changed.add(entry);
+    }
+
+    synchronized void checkpoint() throws IOException {
+        lastCheckpointNanos = System.nanoTime();
+        // The first checkpoint replaces any previous checkpoint
+        if (segments.isEmpty() || segments.size() >= MAX_SEGMENTS) {
+            compact();
+            return;
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        segments.add(UsageCheckpoint.writeSegment(directory, changed));
+        UsageCheckpoint.writeManifest(directory, segments);
+        changed.clear();
+    }
+
+    /**
+     * Stops the background thread and writes a final checkpoint.
+     */
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        checkpoint();
+    }
+
+    private void compact() throws IOException {
+        Files.createDirectories(directory);
+        Path segment = UsageCheckpoint.writeSegment(directory, entries.values());
+        UsageCheckpoint.writeManifest(directory, List.of(segment));
+        segments.clear();
+        segments.add(segment);
+        changed.clear();
+        deleteSegmentsExcept(segment);
+    }
+
+    private void deleteSegmentsExcept(Path segment) throws IOException {
+        Set<Path> keep = new HashSet<>(List.of(segment));
+        List<Path> unused;
+        try (Stream<Path> files = Files.list(directory)) {
+            unused = files.filter(UsageCheckpoint::isSegment)
+                    .filter(file -> !keep.contains(file))
+                    .collect(toList());
+        }
+        for (Path file : unused) {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.usageformatter.UsageReport.StepUsage;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Step usages stored in parallel arrays of durations and pickle step
+ * indexes.
+ */
+final class ColumnarStepUsages extends StepUsageList implements RandomAccess {
+
+    private final long[] nanos;
+    private final int[] pickleStepIndexes;
+    private final int size;
+    private final PickleStepTable pickleSteps;
+
+    ColumnarStepUsages(long[] nanos, int[] pickleStepIndexes, int size, PickleStepTable pickleSteps) {
+        this.nanos = requireNonNull(nanos);
+        this.pickleStepIndexes = requireNonNull(pickleStepIndexes);
+        this.size = size;
+        this.pickleSteps = requireNonNull(pickleSteps);
+    }
+
+    @Override
+    public StepUsage get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return pickleSteps.createStepUsage(pickleStepIndexes[index], nanos[index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    Iterator<StepUsage> slowestFirst() {
+        int[] order = Durations.slowestFirst(nanos, size);
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < order.length;
+            }
+
+            @Override
+            public StepUsage next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return get(order[next++]);
+            }
+        };
+    }
+
+    @Override
+    ColumnarStepUsages slowest(int n) {
+        int[] order = Durations.slowestFirst(nanos, size);
+        int limit = Math.min(n, size);
+        long[] slowestNanos = new long[limit];
+        int[] slowestPickleStepIndexes = new int[limit];
+        for (int i = 0; i < limit; i++) {
+            slowestNanos[i] = nanos[order[i]];
+            slowestPickleStepIndexes[i] = pickleStepIndexes[order[i]];
+        }
+        return new ColumnarStepUsages(slowestNanos, slowestPickleStepIndexes, limit, pickleSteps);
+    }
+}
@@ -0,0 +1,78 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.usageformatter.UsageReport.Statistics;
+import org.jspecify.annotations.Nullable;
+
+import java.math.BigInteger;
+
+/**
+ * Accumulates durations for {@link Statistics} without retaining them.
+ * <p>
+ * The sum of squares is kept as an exact 128-bit integer, so the statistics
+ * are identical to those calculated from all durations at once.
+ */
+final class DurationAccumulator {
+
+    private long count;
+    private long sumNanos;
+    private long sumOfSquaresHigh;
+    private long sumOfSquaresLow;
+
+    DurationAccumulator() {
+        /* no-op */
+    }
+
+    DurationAccumulator(long count, long sumNanos, long sumOfSquaresHigh, long sumOfSquaresLow) {
+        this.count = count;
+        this.sumNanos = sumNanos;
+        this.sumOfSquaresHigh = sumOfSquaresHigh;
+        this.sumOfSquaresLow = sumOfSquaresLow;
+    }
+
+    void add(long nanos) {
+        count++;
+        sumNanos += nanos;
+        long squareLow = nanos * nanos;
+        long squareHigh = Math.multiplyHigh(nanos, nanos);
+        long low = sumOfSquaresLow + squareLow;
+        long carry = Long.compareUnsigned(low, sumOfSquaresLow) < 0 ? 1 : 0;
+        sumOfSquaresLow = low;
+        sumOfSquaresHigh += squareHigh + carry;
+    }
+
+    void merge(DurationAccumulator other) {
+        count += other.count;
+        sumNanos += other.sumNanos;
+        long low = sumOfSquaresLow + other.sumOfSquaresLow;
+        long carry = Long.compareUnsigned(low, sumOfSquaresLow) < 0 ? 1 : 0;
+        sumOfSquaresLow = low;
+        sumOfSquaresHigh += other.sumOfSquaresHigh + carry;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getSumNanos() {
+        return sumNanos;
+    }
+
+    long getSumOfSquaresHigh() {
+        return sumOfSquaresHigh;
+    }
+
+    long getSumOfSquaresLow() {
+        return sumOfSquaresLow;
+    }
+
+    BigInteger getSumOfSquaresNanos() {
+        BigInteger low = BigInteger.valueOf(sumOfSquaresLow >>> 1).shiftLeft(1)
+                .add(BigInteger.valueOf(sumOfSquaresLow & 1));
+        return BigInteger.valueOf(sumOfSquaresHigh).shiftLeft(64).add(low);
+    }
+
+    @Nullable
+    Statistics toStatistics() {
+        return Durations.createStatistics(count, sumNanos, getSumOfSquaresNanos());
+    }
+}
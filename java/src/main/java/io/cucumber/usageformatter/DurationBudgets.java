@@ -0,0 +1,283 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.usageformatter.UsageReport.Statistics;
+import io.cucumber.usageformatter.UsageReport.StepDefinitionUsage;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Limits the duration of step definitions.
+ * <p>
+ * Each budget applies to the step definitions whose expression matches a
+ * regular expression, or that are declared in a glue class. A step
+ * definition exceeds the maximum mean only when the mean is larger than the
+ * maximum by more than the margin of error, so that a few slow executions do
+ * not fail a build by chance.
+ *
+ * @see BudgetReportSerializer
+ */
+public final class DurationBudgets {
+
+    private final List<Budget> budgets;
+
+    private DurationBudgets(List<Budget> budgets) {
+        this.budgets = List.copyOf(budgets);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Reads budgets from a file.
+     * <p>
+     * Each line contains a maximum mean and/or sum, followed by either a
+     * {@code pattern} that takes the rest of the line or a {@code glue}
+     * class. Durations are in seconds, or in milliseconds with a {@code ms}
+     * suffix. Empty lines and lines starting with {@code #} are ignored.
+     *
+     * <pre>
+     * # Orders are slow, but not that slow
+     * mean=250ms sum=10s pattern=^an order for .*$
+     * mean=1 glue=com.example.PaymentSteps
+     * </pre>
+     *
+     * @throws IllegalArgumentException if a line is not a valid budget
+     */
+    public static DurationBudgets read(Path path) throws IOException {
+        return parse(Files.readAllLines(path, UTF_8));
+    }
+
+    static DurationBudgets parse(List<String> lines) {
+        Builder builder = builder();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                parseLine(builder, line);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid budget on line " + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        return builder.build();
+    }
+
+    private static void parseLine(Builder builder, String line) {
+        Duration maxMean = null;
+        Duration maxSum = null;
+        String rest = line;
+        while (!rest.isEmpty()) {
+            if (rest.startsWith("pattern=")) {
+                builder.pattern(rest.substring("pattern=".length()), maxMean, maxSum);
+                return;
+            }
+            int end = rest.indexOf(' ');
+            String token = end < 0 ? rest : rest.substring(0, end);
+            rest = end < 0 ? "" : rest.substring(end + 1).stripLeading();
+            if (token.startsWith("mean=")) {
+                maxMean = parseDuration(token.substring("mean=".length()));
+            } else if (token.startsWith("sum=")) {
+                maxSum = parseDuration(token.substring("sum=".length()));
+            } else if (token.startsWith("glue=") && rest.isEmpty()) {
+                builder.glueClass(token.substring("glue=".length()), maxMean, maxSum);
+                return;
+            } else {
+                throw new IllegalArgumentException("unexpected '" + token + "'");
+            }
+        }
+        throw new IllegalArgumentException("missing pattern= or glue=");
+    }
+
+    private static Duration parseDuration(String value) {
+        try {
+            if (value.endsWith("ms")) {
+                return Duration.ofNanos(new BigDecimal(value.substring(0, value.length() - 2)).movePointRight(6).longValueExact());
+            }
+            String seconds = value.endsWith("s") ? value.substring(0, value.length() - 1) : value;
+            return Duration.ofNanos(new BigDecimal(seconds).movePointRight(9).longValueExact());
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new IllegalArgumentException("not a duration '" + value + "'", e);
+        }
+    }
+
+    /**
+     * Finds the step definitions that exceed their budgets.
+     * <p>
+     * Step definitions without statistics, e.g. because they were not used,
+     * never exceed a budget.
+     */
+    public List<Violation> evaluate(UsageReport report) {
+        List<Violation> violations = new ArrayList<>();
+        for (StepDefinitionUsage stepDefinition : report.getStepDefinitions()) {
+            Statistics statistics = stepDefinition.getDuration();
+            if (statistics == null) {
+                continue;
+            }
+            long meanNanos = Durations.toNanos(statistics.getMean());
+            long moe95Nanos = Durations.toNanos(statistics.getMoe95());
+            long sumNanos = Durations.toNanos(statistics.getSum());
+            for (Budget budget : budgets) {
+                if (!budget.appliesTo(stepDefinition)) {
+                    continue;
+                }
+                Duration maxMean = budget.maxMean;
+                if (maxMean != null && meanNanos - moe95Nanos > maxMean.toNanos()) {
+                    violations.add(new Violation(stepDefinition, budget, Limit.MEAN, maxMean, statistics));
+                }
+                Duration maxSum = budget.maxSum;
+                if (maxSum != null && sumNanos > maxSum.toNanos()) {
+                    violations.add(new Violation(stepDefinition, budget, Limit.SUM, maxSum, statistics));
+                }
+            }
+        }
+        return violations;
+    }
+
+    public enum Limit {
+        MEAN, SUM
+    }
+
+    public static final class Budget {
+        private final @Nullable Pattern pattern;
+        private final @Nullable String glueClass;
+        private final @Nullable Duration maxMean;
+        private final @Nullable Duration maxSum;
+
+        private Budget(@Nullable Pattern pattern, @Nullable String glueClass, @Nullable Duration maxMean, @Nullable Duration maxSum) {
+            if (maxMean == null && maxSum == null) {
+                throw new IllegalArgumentException("A budget requires a maximum mean or sum");
+            }
+            requireNonNegative(maxMean);
+            requireNonNegative(maxSum);
+            this.pattern = pattern;
+            this.glueClass = glueClass;
+            this.maxMean = maxMean;
+            this.maxSum = maxSum;
+        }
+
+        private static void requireNonNegative(@Nullable Duration duration) {
+            if (duration != null && duration.isNegative()) {
+                throw new IllegalArgumentException("A budget can not be negative, was " + duration);
+            }
+        }
+
+        private boolean appliesTo(StepDefinitionUsage stepDefinition) {
+            Pattern pattern = this.pattern;
+            if (pattern != null) {
+                return pattern.matcher(stepDefinition.getExpression().getSource()).matches();
+            }
+            return SourceReferenceFormatter.formatGlueClass(stepDefinition.getSourceReference())
+                    .filter(requireNonNull(glueClass)::equals)
+                    .isPresent();
+        }
+
+        /**
+         * The expression or glue class this budget applies to.
+         */
+        public String getTarget() {
+            Pattern pattern = this.pattern;
+            return pattern != null ? pattern.pattern() : requireNonNull(glueClass);
+        }
+
+        public Optional<Duration> getMaxMean() {
+            return Optional.ofNullable(maxMean);
+        }
+
+        public Optional<Duration> getMaxSum() {
+            return Optional.ofNullable(maxSum);
+        }
+    }
+
+    public static final class Violation {
+        private final StepDefinitionUsage stepDefinition;
+        private final Budget budget;
+        private final Limit limit;
+        private final Duration maximum;
+        private final Statistics statistics;
+
+        private Violation(StepDefinitionUsage stepDefinition, Budget budget, Limit limit, Duration maximum, Statistics statistics) {
+            this.stepDefinition = stepDefinition;
+            this.budget = budget;
+            this.limit = limit;
+            this.maximum = maximum;
+            this.statistics = statistics;
+        }
+
+        public StepDefinitionUsage getStepDefinition() {
+            return stepDefinition;
+        }
+
+        public Budget getBudget() {
+            return budget;
+        }
+
+        public Limit getLimit() {
+            return limit;
+        }
+
+        public Duration getMaximum() {
+            return maximum;
+        }
+
+        public Statistics getStatistics() {
+            return statistics;
+        }
+    }
+
+    public static final class Builder {
+        private final List<Budget> budgets = new ArrayList<>();
+
+        /**
+         * Limits the step definitions whose expression matches
+         * {@code regex}.
+         *
+         * @param maxMean the maximum mean duration, or {@code null}
+         * @param maxSum  the maximum total duration, or {@code null}
+         * @throws IllegalArgumentException if {@code regex} is invalid, or
+         *                                  neither limit is provided
+         */
+        public Builder pattern(String regex, @Nullable Duration maxMean, @Nullable Duration maxSum) {
+            requireNonNull(regex);
+            Pattern pattern;
+            try {
+                pattern = Pattern.compile(regex);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid pattern: " + regex, e);
+            }
+            budgets.add(new Budget(pattern, null, maxMean, maxSum));
+            return this;
+        }
+
+        /**
+         * Limits the step definitions declared in {@code className}.
+         *
+         * @param maxMean the maximum mean duration, or {@code null}
+         * @param maxSum  the maximum total duration, or {@code null}
+         * @throws IllegalArgumentException if neither limit is provided
+         */
+        public Builder glueClass(String className, @Nullable Duration maxMean, @Nullable Duration maxSum) {
+            requireNonNull(className);
+            budgets.add(new Budget(null, className, maxMean, maxSum));
+            return this;
+        }
+
+        public DurationBudgets build() {
+            return new DurationBudgets(budgets);
+        }
+    }
+}
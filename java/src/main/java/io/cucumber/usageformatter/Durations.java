@@ -1,15 +1,18 @@
 package io.cucumber.usageformatter;
 
 import io.cucumber.messages.Convertor;
+import io.cucumber.messages.types.Timestamp;
 import io.cucumber.usageformatter.UsageReport.Statistics;
 import org.jspecify.annotations.Nullable;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
 
-import static java.math.BigDecimal.ZERO;
 import static java.math.MathContext.DECIMAL64;
+import static java.math.RoundingMode.HALF_EVEN;
 
 final class Durations {
 
@@ -19,19 +22,25 @@ final class Durations {
 
     @Nullable
     static Statistics createStatistics(List<Duration> durations) {
-        if (durations.isEmpty()) {
+        DurationAccumulator accumulator = new DurationAccumulator();
+        for (Duration duration : durations) {
+            accumulator.add(duration.toNanos());
+        }
+        return accumulator.toStatistics();
+    }
+
+    @Nullable
+    static Statistics createStatistics(long count, long sumNanos, BigInteger sumOfSquaresNanos) {
+        if (count == 0) {
             return null;
         }
 
-        Duration sum = durations.stream()
-                .reduce(Duration::plus)
-                // Can't happen
-                .orElse(Duration.ZERO);
-        Duration mean = sum.dividedBy(durations.size());
-        Duration moe95 = calculateMarginOfError95(durations, mean);
+        // Truncated, consistent with Duration.dividedBy
+        long meanNanos = sumNanos / count;
+        Duration moe95 = calculateMarginOfError95(count, sumNanos, meanNanos, sumOfSquaresNanos);
         return new Statistics(
-                Convertor.toMessage(sum),
-                Convertor.toMessage(mean),
+                Convertor.toMessage(Duration.ofNanos(sumNanos)),
+                Convertor.toMessage(Duration.ofNanos(meanNanos)),
                 Convertor.toMessage(moe95)
         );
     }
@@ -44,15 +53,15 @@ final class Durations {
      *
      * @see <a href="https://en.wikipedia.org/wiki/Margin_of_error">Wikipedia - Margin of error</a>
      */
-    private static Duration calculateMarginOfError95(List<Duration> durations, Duration mean) {
-        var n = BigDecimal.valueOf(durations.size());
-        var meanSeconds = toBigDecimalSeconds(mean);
-        var varianceTimeN = durations.stream()
-                .map(Durations::toBigDecimalSeconds)
-                .map(durationSeconds -> durationSeconds.subtract(meanSeconds).pow(2))
-                .reduce(BigDecimal::add)
-                //.map(sum -> sum.divide(n, DECIMAL64))
-                .orElse(ZERO);
+    private static Duration calculateMarginOfError95(long count, long sumNanos, long meanNanos, BigInteger sumOfSquaresNanos) {
+        var n = BigDecimal.valueOf(count);
+        var mean = BigInteger.valueOf(meanNanos);
+        // sum((x - mean)^2) = sum(x^2) - 2 * mean * sum(x) + n * mean^2
+        var varianceTimesNNanos = sumOfSquaresNanos
+                .subtract(mean.multiply(BigInteger.valueOf(sumNanos)).shiftLeft(1))
+                .add(mean.multiply(mean).multiply(BigInteger.valueOf(count)));
+        // Nanoseconds squared to seconds squared
+        var varianceTimeN = new BigDecimal(varianceTimesNNanos, 18);
         var stdError = varianceTimeN
                 //.divide(n, DECIMAL64)
                 .sqrt(DECIMAL64)
@@ -66,6 +75,43 @@ final class Durations {
         return Duration.ofSeconds(seconds, nanos);
     }
 
+    /**
+     * Orders the first {@code size} durations from slowest to fastest.
+     * <p>
+     * The sort is stable, durations of equal length keep their order.
+     *
+     * @return the indexes of the durations, slowest first
+     */
+    static int[] slowestFirst(long[] nanos, int size) {
+        // Durations don't fit next to an index in a long, their ranks do.
+        // Equal durations have the same rank and are ordered by index.
+        long[] sorted = Arrays.copyOf(nanos, size);
+        Arrays.sort(sorted);
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            long rank = size - 1 - Arrays.binarySearch(sorted, nanos[i]);
+            keys[i] = rank << 32 | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    static long toNanos(io.cucumber.messages.types.Duration duration) {
+        return duration.getSeconds() * 1_000_000_000L + duration.getNanos();
+    }
+
+    static long toNanos(Timestamp timestamp) {
+        return timestamp.getSeconds() * 1_000_000_000L + timestamp.getNanos();
+    }
+
+    static long toMicros(Timestamp timestamp) {
+        return timestamp.getSeconds() * 1_000_000L + timestamp.getNanos() / 1_000;
+    }
+
     static BigDecimal toBigDecimalSeconds(Duration duration) {
         return BigDecimal.valueOf(duration.getSeconds()).add(BigDecimal.valueOf(duration.getNano(), 9));
     }
@@ -73,4 +119,20 @@ final class Durations {
     static BigDecimal toBigDecimalSeconds(io.cucumber.messages.types.Duration duration) {
         return BigDecimal.valueOf(duration.getSeconds()).add(BigDecimal.valueOf(duration.getNanos(), 9));
     }
+
+    /**
+     * Formats a duration in seconds with millisecond precision, e.g.
+     * {@code 1.250s}.
+     */
+    static String formatDuration(Duration duration) {
+        return formatSeconds(toBigDecimalSeconds(duration));
+    }
+
+    static String formatDuration(io.cucumber.messages.types.Duration duration) {
+        return formatSeconds(toBigDecimalSeconds(duration));
+    }
+
+    private static String formatSeconds(BigDecimal seconds) {
+        return seconds.setScale(3, HALF_EVEN).toPlainString() + "s";
+    }
 }
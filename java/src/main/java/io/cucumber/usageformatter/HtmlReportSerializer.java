@@ -0,0 +1,215 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.types.Location;
+import io.cucumber.usageformatter.UsageReport.Statistics;
+import io.cucumber.usageformatter.UsageReport.StepDefinitionUsage;
+import io.cucumber.usageformatter.UsageReport.StepUsage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static io.cucumber.usageformatter.Durations.toNanos;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.comparingLong;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Writes the usage report as a single html file without external assets.
+ * <p>
+ * The report data is embedded as json. Strings are deduplicated into a
+ * single table and step definitions and matches are stored column by column,
+ * so large reports stay compact. The page renders only the visible rows of
+ * its tables, which can be sorted and filtered.
+ */
+public final class HtmlReportSerializer implements MessagesToUsageWriter.Serializer {
+
+    private static final String TEMPLATE = "usage-report.html";
+    private static final String DATA_PLACEHOLDER = "/*usage-data*/";
+    private static final int INCLUDE_ALL_MATCHES = -1;
+    private static final long ABSENT = -1;
+
+    private final int maxMatchesPerStepDefinition;
+    private final Function<String, String> uriFormatter;
+    private final SourceReferenceFormatter sourceReferenceFormatter;
+
+    private HtmlReportSerializer(int maxMatchesPerStepDefinition, Function<String, String> uriFormatter) {
+        this.maxMatchesPerStepDefinition = maxMatchesPerStepDefinition;
+        this.uriFormatter = requireNonNull(uriFormatter);
+        this.sourceReferenceFormatter = new SourceReferenceFormatter(uriFormatter);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public void writeValue(Writer writer, UsageReport value) throws IOException {
+        String template = readTemplate();
+        int placeholder = template.indexOf(DATA_PLACEHOLDER);
+        if (placeholder < 0) {
+            throw new IOException("Template " + TEMPLATE + " does not contain " + DATA_PLACEHOLDER);
+        }
+        writer.append(template, 0, placeholder);
+        writeData(writer, value);
+        writer.append(template, placeholder + DATA_PLACEHOLDER.length(), template.length());
+    }
+
+    @Override
+    public MessagesToUsageWriter.Requirements requirements() {
+        return MessagesToUsageWriter.Requirements.topMatches(maxMatchesPerStepDefinition);
+    }
+
+    private static String readTemplate() throws IOException {
+        try (InputStream in = HtmlReportSerializer.class.getResourceAsStream(TEMPLATE)) {
+            if (in == null) {
+                throw new IOException("Could not find " + TEMPLATE);
+            }
+            return new String(in.readAllBytes(), UTF_8);
+        }
+    }
+
+    private void writeData(Writer writer, UsageReport report) throws IOException {
+        StringTable strings = new StringTable();
+        List<StepDefinitionUsage> stepDefinitions = report.getStepDefinitions();
+        int size = stepDefinitions.size();
+        long[] expressions = new long[size];
+        long[] locations = new long[size];
+        long[] matchCounts = new long[size];
+        long[] sums = new long[size];
+        long[] means = new long[size];
+        long[] moe95s = new long[size];
+        Column matchStepDefinitions = new Column();
+        Column matchTexts = new Column();
+        Column matchUris = new Column();
+        Column matchLines = new Column();
+        Column matchDurations = new Column();
+
+        for (int i = 0; i < size; i++) {
+            StepDefinitionUsage stepDefinition = stepDefinitions.get(i);
+            expressions[i] = strings.indexOf(stepDefinition.getExpression().getSource());
+            locations[i] = strings.indexOf(sourceReferenceFormatter.format(stepDefinition.getSourceReference()).orElse(""));
+            matchCounts[i] = stepDefinition.getMatchCount();
+            Statistics duration = stepDefinition.getDuration();
+            sums[i] = duration == null ? ABSENT : toNanos(duration.getSum());
+            means[i] = duration == null ? ABSENT : toNanos(duration.getMean());
+            moe95s[i] = duration == null ? ABSENT : toNanos(duration.getMoe95());
+            for (StepUsage match : slowest(stepDefinition.getMatches())) {
+                matchStepDefinitions.add(i);
+                matchTexts.add(strings.indexOf(match.getText()));
+                matchUris.add(strings.indexOf(uriFormatter.apply(match.getUri())));
+                matchLines.add(match.getLocation().map(Location::getLine).orElse(0L));
+                matchDurations.add(toNanos(match.getDuration()));
+            }
+        }
+
+        // Embedded in a script element
+        JsonWriter json = new JsonWriter(writer, false, true);
+        json.beginObject();
+        Optional<Integer> sampleSize = report.getSampleSize();
+        if (sampleSize.isPresent()) {
+            json.name("sampleSize").value(sampleSize.get());
+        }
+        json.name("strings").beginArray();
+        for (String string : strings.values) {
+            json.value(string);
+        }
+        json.endArray();
+        json.name("stepDefinitions").beginObject();
+        writeColumn(json, "expression", expressions, size);
+        writeColumn(json, "location", locations, size);
+        writeColumn(json, "matchCount", matchCounts, size);
+        writeColumn(json, "sum", sums, size);
+        writeColumn(json, "mean", means, size);
+        writeColumn(json, "moe95", moe95s, size);
+        json.endObject();
+        json.name("matches").beginObject();
+        writeColumn(json, "stepDefinition", matchStepDefinitions.values, matchStepDefinitions.size);
+        writeColumn(json, "text", matchTexts.values, matchTexts.size);
+        writeColumn(json, "uri", matchUris.values, matchUris.size);
+        writeColumn(json, "line", matchLines.values, matchLines.size);
+        writeColumn(json, "duration", matchDurations.values, matchDurations.size);
+        json.endObject();
+        json.endObject();
+    }
+
+    private List<StepUsage> slowest(List<StepUsage> matches) {
+        int n = maxMatchesPerStepDefinition == INCLUDE_ALL_MATCHES
+                ? matches.size()
+                : Math.min(maxMatchesPerStepDefinition, matches.size());
+        if (matches instanceof StepUsageList stepUsages) {
+            return stepUsages.slowest(n);
+        }
+        return matches.stream()
+                .sorted(comparingLong((StepUsage match) -> toNanos(match.getDuration())).reversed())
+                .limit(n)
+                .collect(toList());
+    }
+
+    private static void writeColumn(JsonWriter json, String name, long[] values, int size) throws IOException {
+        json.name(name).beginArray();
+        for (int i = 0; i < size; i++) {
+            json.value(values[i]);
+        }
+        json.endArray();
+    }
+
+    private static final class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        private int indexOf(String value) {
+            return indexes.computeIfAbsent(value, key -> {
+                values.add(key);
+                return values.size() - 1;
+            });
+        }
+    }
+
+    private static final class Column {
+        private long[] values = new long[16];
+        private int size;
+
+        private void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    public static final class Builder {
+        private int maxMatchesPerStepDefinition = INCLUDE_ALL_MATCHES;
+        private Function<String, String> uriFormatter = Function.identity();
+
+        /**
+         * Limit the number of matches included per step definition.
+         * <p>
+         * A negative value means all matches are included.
+         */
+        public Builder maxMatchesPerStepDefinition(int n) {
+            this.maxMatchesPerStepDefinition = n < 0 ? INCLUDE_ALL_MATCHES : n;
+            return this;
+        }
+
+        /**
+         * Removes a given prefix from all URI locations.
+         */
+        public Builder removeUriPrefix(String prefix) {
+            this.uriFormatter = SourceReferenceFormatter.removeUriPrefix(prefix);
+            return this;
+        }
+
+        public HtmlReportSerializer build() {
+            return new HtmlReportSerializer(maxMatchesPerStepDefinition, uriFormatter);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.types.Duration;
+import io.cucumber.messages.types.JavaMethod;
+import io.cucumber.messages.types.JavaStackTraceElement;
+import io.cucumber.messages.types.Location;
+import io.cucumber.messages.types.SourceReference;
+import io.cucumber.messages.types.StepDefinitionPattern;
+import io.cucumber.usageformatter.UsageReport.Overhead;
+import io.cucumber.usageformatter.UsageReport.Statistics;
+import io.cucumber.usageformatter.UsageReport.StepDefinitionUsage;
+import io.cucumber.usageformatter.UsageReport.StepUsage;
+import io.cucumber.usageformatter.UsageReport.UnattributedOverhead;
+import io.cucumber.usageformatter.UsageReport.WarmUp;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Writes the usage report as pretty printed JSON.
+ * <p>
+ * Does not require a JSON library. Absent values are omitted.
+ */
+public final class JsonReportSerializer implements MessagesToUsageWriter.Serializer {
+
+    @Override
+    public void writeValue(Writer writer, UsageReport value) throws IOException {
+        JsonWriter json = new JsonWriter(writer, true);
+        json.beginObject();
+        Optional<Integer> sampleSize = value.getSampleSize();
+        if (sampleSize.isPresent()) {
+            json.name("sampleSize").value(sampleSize.get());
+        }
+        json.name("stepDefinitions").beginArray();
+        for (StepDefinitionUsage stepDefinition : value.getStepDefinitions()) {
+            writeStepDefinition(json, stepDefinition);
+        }
+        json.endArray();
+        Optional<UnattributedOverhead> unattributedOverhead = value.getUnattributedOverhead();
+        if (unattributedOverhead.isPresent()) {
+            writeUnattributedOverhead(json.name("unattributedOverhead"), unattributedOverhead.get());
+        }
+        json.endObject();
+    }
+
+    private static void writeUnattributedOverhead(JsonWriter json, UnattributedOverhead unattributedOverhead) throws IOException {
+        json.beginObject();
+        writeOverheads(json.name("features"), unattributedOverhead.getFeatures());
+        writeOverheads(json.name("glueClasses"), unattributedOverhead.getGlueClasses());
+        writeOverheads(json.name("scenarios"), unattributedOverhead.getScenarios());
+        json.endObject();
+    }
+
+    private static void writeOverheads(JsonWriter json, List<Overhead> overheads) throws IOException {
+        json.beginArray();
+        for (Overhead overhead : overheads) {
+            json.beginObject();
+            Optional<String> location = overhead.getLocation();
+            if (location.isPresent()) {
+                json.name("location").value(location.get());
+            }
+            json.name("name").value(overhead.getName());
+            writeDuration(json.name("stepTime"), overhead.getStepTime());
+            json.name("testCases").value(overhead.getTestCases());
+            writeDuration(json.name("unattributed"), overhead.getUnattributed());
+            writeDuration(json.name("wallTime"), overhead.getWallTime());
+            json.endObject();
+        }
+        json.endArray();
+    }
+
+    private static void writeStepDefinition(JsonWriter json, StepDefinitionUsage stepDefinition) throws IOException {
+        json.beginObject();
+        Statistics duration = stepDefinition.getDuration();
+        if (duration != null) {
+            writeStatistics(json.name("duration"), duration);
+        }
+        writeExpression(json.name("expression"), stepDefinition.getExpression());
+        json.name("matchCount").value(stepDefinition.getMatchCount());
+        json.name("matches").beginArray();
+        for (StepUsage match : stepDefinition.getMatches()) {
+            writeStepUsage(json, match);
+        }
+        json.endArray();
+        writeSourceReference(json.name("sourceReference"), stepDefinition.getSourceReference());
+        Optional<WarmUp> warmUp = stepDefinition.getWarmUp();
+        if (warmUp.isPresent()) {
+            writeWarmUp(json.name("warmUp"), warmUp.get());
+        }
+        json.endObject();
+    }
+
+    private static void writeWarmUp(JsonWriter json, WarmUp warmUp) throws IOException {
+        json.beginObject();
+        json.name("drift").value(warmUp.getDrift());
+        json.name("drifting").value(warmUp.isDrifting());
+        writeStatistics(json.name("duration"), warmUp.getDuration());
+        json.name("executions").value(warmUp.getExecutions());
+        writeDuration(json.name("penalty"), warmUp.getPenalty());
+        Optional<Statistics> steadyState = warmUp.getSteadyState();
+        if (steadyState.isPresent()) {
+            writeStatistics(json.name("steadyState"), steadyState.get());
+        }
+        json.endObject();
+    }
+
+    private static void writeStatistics(JsonWriter json, Statistics statistics) throws IOException {
+        json.beginObject();
+        writeDuration(json.name("mean"), statistics.getMean());
+        writeDuration(json.name("moe95"), statistics.getMoe95());
+        writeDuration(json.name("sum"), statistics.getSum());
+        json.endObject();
+    }
+
+    private static void writeStepUsage(JsonWriter json, StepUsage match) throws IOException {
+        json.beginObject();
+        writeDuration(json.name("duration"), match.getDuration());
+        Optional<Location> location = match.getLocation();
+        if (location.isPresent()) {
+            writeLocation(json.name("location"), location.get());
+        }
+        json.name("text").value(match.getText());
+        json.name("uri").value(match.getUri());
+        json.endObject();
+    }
+
+    private static void writeExpression(JsonWriter json, StepDefinitionPattern pattern) throws IOException {
+        json.beginObject();
+        json.name("source").value(pattern.getSource());
+        json.name("type").value(pattern.getType().name());
+        json.endObject();
+    }
+
+    private static void writeSourceReference(JsonWriter json, SourceReference sourceReference) throws IOException {
+        json.beginObject();
+        Optional<String> uri = sourceReference.getUri();
+        if (uri.isPresent()) {
+            json.name("uri").value(uri.get());
+        }
+        Optional<JavaMethod> javaMethod = sourceReference.getJavaMethod();
+        if (javaMethod.isPresent()) {
+            json.name("javaMethod").beginObject();
+            json.name("className").value(javaMethod.get().getClassName());
+            json.name("methodName").value(javaMethod.get().getMethodName());
+            json.name("methodParameterTypes").beginArray();
+            for (String methodParameterType : javaMethod.get().getMethodParameterTypes()) {
+                json.value(methodParameterType);
+            }
+            json.endArray();
+            json.endObject();
+        }
+        Optional<JavaStackTraceElement> javaStackTraceElement = sourceReference.getJavaStackTraceElement();
+        if (javaStackTraceElement.isPresent()) {
+            json.name("javaStackTraceElement").beginObject();
+            json.name("className").value(javaStackTraceElement.get().getClassName());
+            json.name("fileName").value(javaStackTraceElement.get().getFileName());
+            json.name("methodName").value(javaStackTraceElement.get().getMethodName());
+            json.endObject();
+        }
+        Optional<Location> location = sourceReference.getLocation();
+        if (location.isPresent()) {
+            writeLocation(json.name("location"), location.get());
+        }
+        json.endObject();
+    }
+
+    private static void writeLocation(JsonWriter json, Location location) throws IOException {
+        json.beginObject();
+        json.name("line").value(location.getLine());
+        Optional<Long> column = location.getColumn();
+        if (column.isPresent()) {
+            json.name("column").value(column.get());
+        }
+        json.endObject();
+    }
+
+    private static void writeDuration(JsonWriter json, Duration duration) throws IOException {
+        json.beginObject();
+        json.name("seconds").value(duration.getSeconds());
+        json.name("nanos").value(duration.getNanos());
+        json.endObject();
+    }
+}
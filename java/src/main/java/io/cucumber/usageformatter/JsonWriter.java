@@ -0,0 +1,179 @@
+package io.cucumber.usageformatter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static java.lang.System.lineSeparator;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes JSON without an intermediate tree.
+ * <p>
+ * Pretty printed output is indented with two spaces and places each value on
+ * its own line, similar to the default pretty printer of Jackson. Strings are
+ * escaped like Jackson does by default, unless the output is embedded in html.
+ */
+final class JsonWriter {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final Appendable out;
+    private final boolean pretty;
+    private final boolean escapeHtml;
+    private int[] valuesInContainer = new int[8];
+    private int depth;
+    private boolean afterName;
+
+    JsonWriter(Appendable out, boolean pretty) {
+        this(out, pretty, false);
+    }
+
+    /**
+     * @param escapeHtml also escape characters that would end a html script
+     *                   element or a javascript string
+     */
+    JsonWriter(Appendable out, boolean pretty, boolean escapeHtml) {
+        this.out = requireNonNull(out);
+        this.pretty = pretty;
+        this.escapeHtml = escapeHtml;
+    }
+
+    JsonWriter beginObject() throws IOException {
+        beforeValue();
+        out.append('{');
+        push();
+        return this;
+    }
+
+    JsonWriter endObject() throws IOException {
+        pop('}');
+        return this;
+    }
+
+    JsonWriter beginArray() throws IOException {
+        beforeValue();
+        out.append('[');
+        push();
+        return this;
+    }
+
+    JsonWriter endArray() throws IOException {
+        pop(']');
+        return this;
+    }
+
+    JsonWriter name(String name) throws IOException {
+        beforeValue();
+        writeString(name);
+        out.append(pretty ? ": " : ":");
+        afterName = true;
+        return this;
+    }
+
+    JsonWriter value(String value) throws IOException {
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    JsonWriter value(long value) throws IOException {
+        beforeValue();
+        out.append(Long.toString(value));
+        return this;
+    }
+
+    JsonWriter value(double value) throws IOException {
+        if (!Double.isFinite(value)) {
+            throw new IllegalArgumentException("Not a finite number: " + value);
+        }
+        beforeValue();
+        out.append(Double.toString(value));
+        return this;
+    }
+
+    JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        out.append(Boolean.toString(value));
+        return this;
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth == 0) {
+            return;
+        }
+        if (valuesInContainer[depth - 1]++ > 0) {
+            out.append(',');
+        }
+        newLine(depth);
+    }
+
+    private void push() {
+        if (depth == valuesInContainer.length) {
+            valuesInContainer = Arrays.copyOf(valuesInContainer, depth * 2);
+        }
+        valuesInContainer[depth++] = 0;
+    }
+
+    private void pop(char close) throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("Not in an object or array");
+        }
+        depth--;
+        if (valuesInContainer[depth] > 0) {
+            newLine(depth);
+        } else if (pretty) {
+            out.append(' ');
+        }
+        out.append(close);
+    }
+
+    private void newLine(int indent) throws IOException {
+        if (!pretty) {
+            return;
+        }
+        out.append(lineSeparator());
+        for (int i = 0; i < indent; i++) {
+            out.append("  ");
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                case '\b' -> out.append("\\b");
+                case '\f' -> out.append("\\f");
+                default -> {
+                    if (c < 0x20 || (escapeHtml && isHtmlSensitive(c))) {
+                        writeEscaped(c);
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    private static boolean isHtmlSensitive(char c) {
+        return c == '<' || c == '>' || c == '&' || c == '\u2028' || c == '\u2029';
+    }
+
+    private void writeEscaped(char c) throws IOException {
+        out.append("\\u")
+                .append(HEX[(c >> 12) & 0xF])
+                .append(HEX[(c >> 8) & 0xF])
+                .append(HEX[(c >> 4) & 0xF])
+                .append(HEX[c & 0xF]);
+    }
+}
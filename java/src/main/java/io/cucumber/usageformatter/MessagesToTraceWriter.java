@@ -0,0 +1,330 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.messages.types.Hook;
+import io.cucumber.messages.types.Pickle;
+import io.cucumber.messages.types.PickleStep;
+import io.cucumber.messages.types.StepDefinition;
+import io.cucumber.messages.types.TestCase;
+import io.cucumber.messages.types.TestCaseFinished;
+import io.cucumber.messages.types.TestCaseStarted;
+import io.cucumber.messages.types.TestStep;
+import io.cucumber.messages.types.TestStepFinished;
+import io.cucumber.messages.types.TestStepStarted;
+import io.cucumber.messages.types.Timestamp;
+import org.jspecify.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes the timeline of a test run as trace events.
+ * <p>
+ * Each worker is a track with a span for every test case and nested spans
+ * for its steps. The result can be opened in trace viewers such as Perfetto
+ * or {@code chrome://tracing}.
+ * <p>
+ * Unlike {@link MessagesToUsageWriter}, events are written as messages are
+ * received. Only the names of steps and test cases are retained, until the
+ * last attempt of their test case has finished.
+ *
+ * @see <a href="https://docs.google.com/document/d/1CvAClvFfyA5R-PhYUmn5OOQtYMH4h6I0nSsKchNAySU">Trace Event Format</a>
+ */
+public final class MessagesToTraceWriter implements AutoCloseable {
+
+    private static final int PROCESS_ID = 1;
+
+    private final Writer out;
+    private final SourceReferenceFormatter sourceReferenceFormatter;
+    private final Map<String, String> pickleNames = new HashMap<>();
+    private final Map<String, String> pickleStepTexts = new HashMap<>();
+    private final Map<String, String> stepDefinitionLabels = new HashMap<>();
+    private final Map<String, String> hookLabels = new HashMap<>();
+    private final Map<String, String> testCaseNames = new HashMap<>();
+    private final Map<String, StepLabel> stepLabels = new HashMap<>();
+    private final Map<String, List<String>> testStepIds = new HashMap<>();
+    private final Map<String, Started> startedTestCases = new HashMap<>();
+    private final Map<String, Integer> threadIds = new HashMap<>();
+    private final BitSet busyLanes = new BitSet();
+    private boolean firstEvent = true;
+    private boolean streamClosed = false;
+
+    private MessagesToTraceWriter(OutputStream out, Function<String, String> uriFormatter) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(requireNonNull(out), UTF_8));
+        this.sourceReferenceFormatter = new SourceReferenceFormatter(uriFormatter);
+        this.out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        writeMetadata("process_name", 0, "Cucumber");
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public void write(Envelope envelope) throws IOException {
+        if (streamClosed) {
+            throw new IOException("Stream closed");
+        }
+        envelope.getPickle().ifPresent(this::add);
+        envelope.getStepDefinition().ifPresent(this::add);
+        envelope.getHook().ifPresent(this::add);
+        envelope.getTestCase().ifPresent(this::add);
+        Optional<TestCaseStarted> testCaseStarted = envelope.getTestCaseStarted();
+        if (testCaseStarted.isPresent()) {
+            begin(testCaseStarted.get());
+        }
+        Optional<TestStepStarted> testStepStarted = envelope.getTestStepStarted();
+        if (testStepStarted.isPresent()) {
+            begin(testStepStarted.get());
+        }
+        Optional<TestStepFinished> testStepFinished = envelope.getTestStepFinished();
+        if (testStepFinished.isPresent()) {
+            end(testStepFinished.get());
+        }
+        Optional<TestCaseFinished> testCaseFinished = envelope.getTestCaseFinished();
+        if (testCaseFinished.isPresent()) {
+            end(testCaseFinished.get());
+        }
+    }
+
+    private void add(Pickle pickle) {
+        pickleNames.put(pickle.getId(), pickle.getName());
+        for (PickleStep step : pickle.getSteps()) {
+            pickleStepTexts.put(step.getId(), step.getText());
+        }
+    }
+
+    private void add(StepDefinition stepDefinition) {
+        String label = sourceReferenceFormatter.format(stepDefinition.getSourceReference())
+                .orElse(stepDefinition.getPattern().getSource());
+        stepDefinitionLabels.put(stepDefinition.getId(), label);
+    }
+
+    private void add(Hook hook) {
+        String location = sourceReferenceFormatter.format(hook.getSourceReference()).orElse("");
+        hookLabels.put(hook.getId(), hook.getName().orElse("Hook") + (location.isEmpty() ? "" : " " + location));
+    }
+
+    private void add(TestCase testCase) {
+        // The pickle is only needed to create the labels of its test case
+        String pickleName = pickleNames.remove(testCase.getPickleId());
+        testCaseNames.put(testCase.getId(), pickleName == null ? testCase.getPickleId() : pickleName);
+        List<String> ids = new ArrayList<>(testCase.getTestSteps().size());
+        for (TestStep testStep : testCase.getTestSteps()) {
+            stepLabels.put(testStep.getId(), createStepLabel(testStep));
+            ids.add(testStep.getId());
+        }
+        testStepIds.put(testCase.getId(), ids);
+    }
+
+    private StepLabel createStepLabel(TestStep testStep) {
+        Optional<String> hookId = testStep.getHookId();
+        if (hookId.isPresent()) {
+            return new StepLabel(hookLabels.getOrDefault(hookId.get(), "Hook"), null);
+        }
+        String text = testStep.getPickleStepId()
+                .map(pickleStepTexts::remove)
+                .orElse(testStep.getId());
+        List<String> stepDefinitionIds = testStep.getStepDefinitionIds().orElse(List.of());
+        String stepDefinition = stepDefinitionIds.size() == 1
+                ? stepDefinitionLabels.get(stepDefinitionIds.get(0))
+                : null;
+        return new StepLabel(text, stepDefinition);
+    }
+
+    private void begin(TestCaseStarted testCaseStarted) throws IOException {
+        // Without workers, concurrent test cases are placed on the first
+        // free lane, so spans on a track never overlap
+        int lane = -1;
+        String track;
+        Optional<String> workerId = testCaseStarted.getWorkerId();
+        if (workerId.isPresent()) {
+            track = "worker " + workerId.get();
+        } else {
+            lane = busyLanes.nextClearBit(0);
+            busyLanes.set(lane);
+            track = "lane " + lane;
+        }
+        int threadId = threadIdOf(track);
+        startedTestCases.put(testCaseStarted.getId(), new Started(testCaseStarted.getTestCaseId(), threadId, lane));
+        String name = testCaseNames.getOrDefault(testCaseStarted.getTestCaseId(), testCaseStarted.getTestCaseId());
+        JsonWriter event = beginEvent(name, "test case", "B", threadId, testCaseStarted.getTimestamp());
+        event.name("args").beginObject();
+        event.name("attempt").value(testCaseStarted.getAttempt());
+        event.endObject();
+        endEvent(event);
+    }
+
+    private void begin(TestStepStarted testStepStarted) throws IOException {
+        Started started = startedTestCases.get(testStepStarted.getTestCaseStartedId());
+        if (started == null) {
+            return;
+        }
+        StepLabel label = stepLabels.get(testStepStarted.getTestStepId());
+        String name = label == null ? testStepStarted.getTestStepId() : label.text;
+        JsonWriter event = beginEvent(name, "step", "B", started.threadId, testStepStarted.getTimestamp());
+        if (label != null && label.stepDefinition != null) {
+            event.name("args").beginObject();
+            event.name("stepDefinition").value(label.stepDefinition);
+            event.endObject();
+        }
+        endEvent(event);
+    }
+
+    private void end(TestStepFinished testStepFinished) throws IOException {
+        Started started = startedTestCases.get(testStepFinished.getTestCaseStartedId());
+        if (started == null) {
+            return;
+        }
+        JsonWriter event = beginEvent(null, "step", "E", started.threadId, testStepFinished.getTimestamp());
+        event.name("args").beginObject();
+        event.name("status").value(testStepFinished.getTestStepResult().getStatus().name());
+        event.endObject();
+        endEvent(event);
+    }
+
+    private void end(TestCaseFinished testCaseFinished) throws IOException {
+        Started started = startedTestCases.remove(testCaseFinished.getTestCaseStartedId());
+        if (started == null) {
+            return;
+        }
+        if (started.lane >= 0) {
+            busyLanes.clear(started.lane);
+        }
+        endEvent(beginEvent(null, "test case", "E", started.threadId, testCaseFinished.getTimestamp()));
+        if (!testCaseFinished.getWillBeRetried()) {
+            evict(started.testCaseId);
+        }
+    }
+
+    private void evict(String testCaseId) {
+        testCaseNames.remove(testCaseId);
+        List<String> ids = testStepIds.remove(testCaseId);
+        if (ids != null) {
+            ids.forEach(stepLabels::remove);
+        }
+    }
+
+    /**
+     * The number of retained names of pickles, test cases and steps.
+     */
+    int getRetainedNameCount() {
+        return pickleNames.size() + pickleStepTexts.size() + testCaseNames.size() + stepLabels.size();
+    }
+
+    private int threadIdOf(String track) throws IOException {
+        Integer threadId = threadIds.get(track);
+        if (threadId != null) {
+            return threadId;
+        }
+        int created = threadIds.size() + 1;
+        threadIds.put(track, created);
+        writeMetadata("thread_name", created, track);
+        return created;
+    }
+
+    private void writeMetadata(String name, int threadId, String value) throws IOException {
+        JsonWriter event = startEvent();
+        event.name("name").value(name);
+        event.name("ph").value("M");
+        event.name("pid").value(PROCESS_ID);
+        event.name("tid").value(threadId);
+        event.name("args").beginObject();
+        event.name("name").value(value);
+        event.endObject();
+        endEvent(event);
+    }
+
+    private JsonWriter beginEvent(@Nullable String name, String category, String phase, int threadId, Timestamp timestamp) throws IOException {
+        JsonWriter event = startEvent();
+        if (name != null) {
+            event.name("name").value(name);
+        }
+        event.name("cat").value(category);
+        event.name("ph").value(phase);
+        event.name("ts").value(Durations.toMicros(timestamp));
+        event.name("pid").value(PROCESS_ID);
+        event.name("tid").value(threadId);
+        return event;
+    }
+
+    private JsonWriter startEvent() throws IOException {
+        if (!firstEvent) {
+            out.write(',');
+        }
+        firstEvent = false;
+        // One event per line, keeps large traces readable
+        out.write('\n');
+        return new JsonWriter(out, false).beginObject();
+    }
+
+    private static void endEvent(JsonWriter event) throws IOException {
+        event.endObject();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (streamClosed) {
+            return;
+        }
+        try {
+            out.write("\n]}");
+        } finally {
+            try {
+                out.close();
+            } finally {
+                streamClosed = true;
+            }
+        }
+    }
+
+    private static final class StepLabel {
+        private final String text;
+        private final @Nullable String stepDefinition;
+
+        private StepLabel(String text, @Nullable String stepDefinition) {
+            this.text = text;
+            this.stepDefinition = stepDefinition;
+        }
+    }
+
+    private static final class Started {
+        private final String testCaseId;
+        private final int threadId;
+        private final int lane;
+
+        private Started(String testCaseId, int threadId, int lane) {
+            this.testCaseId = testCaseId;
+            this.threadId = threadId;
+            this.lane = lane;
+        }
+    }
+
+    public static final class Builder {
+        private Function<String, String> uriFormatter = Function.identity();
+
+        /**
+         * Removes a given prefix from all URI locations.
+         */
+        public Builder removeUriPrefix(String prefix) {
+            this.uriFormatter = SourceReferenceFormatter.removeUriPrefix(prefix);
+            return this;
+        }
+
+        public MessagesToTraceWriter build(OutputStream out) throws IOException {
+            return new MessagesToTraceWriter(out, uriFormatter);
+        }
+    }
+}
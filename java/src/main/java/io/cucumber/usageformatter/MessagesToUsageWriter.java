@@ -3,12 +3,24 @@ package io.cucumber.usageformatter;
 import io.cucumber.messages.types.Envelope;
 import io.cucumber.query.Query;
 import io.cucumber.query.Repository;
+import io.cucumber.usageformatter.UsageReport.UnattributedOverhead;
+
+import org.jspecify.annotations.Nullable;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static io.cucumber.query.Repository.RepositoryFeature.INCLUDE_GHERKIN_DOCUMENTS;
 import static io.cucumber.query.Repository.RepositoryFeature.INCLUDE_STEP_DEFINITIONS;
@@ -17,36 +29,80 @@ import static java.util.Objects.requireNonNull;
 /**
  * Writes usage statistics for step definitions.
  * <p>
+ * The messages are ingested once and the usage report is built once, but it
+ * can be written to multiple targets, each with their own serializer.
+ * <p>
  * Note: Messages are first collected and only written once the stream is
  * closed.
+ * <p>
+ * Messages are collected in a private repository, unless the writer is
+ * attached to a query that is already maintained elsewhere, see
+ * {@link Builder#query(Query)}.
  */
 public final class MessagesToUsageWriter implements AutoCloseable {
 
-    private final OutputStreamWriter out;
-    private final Repository repository = Repository.builder()
-            .feature(INCLUDE_GHERKIN_DOCUMENTS, true)
-            .feature(INCLUDE_STEP_DEFINITIONS, true)
-            .build();
-    private final Query query = new Query(repository);
-    private final Serializer serializer;
+    private final List<Target> targets;
+    private final boolean parallelSerialization;
+    private final long matchesHeapBudgetInBytes;
+    private final int matchSampleSize;
+    private final @Nullable WarmUpAccumulator warmUps;
+    private final @Nullable CheckpointWriter checkpoint;
+    private final @Nullable OverheadAccumulator overhead;
+    private final @Nullable Repository repository;
+    private final Query query;
     private boolean streamClosed = false;
 
-    MessagesToUsageWriter(OutputStream out, Serializer serializer) {
-        this.out = new OutputStreamWriter(
-                requireNonNull(out),
-                StandardCharsets.UTF_8);
-        this.serializer = requireNonNull(serializer);
+    private MessagesToUsageWriter(List<Target> targets, boolean parallelSerialization, long matchesHeapBudgetInBytes, int matchSampleSize, @Nullable WarmUpAccumulator warmUps, @Nullable CheckpointWriter checkpoint, @Nullable OverheadAccumulator overhead, @Nullable Query externalQuery) {
+        this.targets = requireNonNull(targets);
+        this.parallelSerialization = parallelSerialization;
+        this.matchesHeapBudgetInBytes = matchesHeapBudgetInBytes;
+        this.matchSampleSize = matchSampleSize;
+        this.warmUps = warmUps;
+        this.checkpoint = checkpoint;
+        this.overhead = overhead;
+        if (externalQuery == null) {
+            Repository repository = Repository.builder()
+                    .feature(INCLUDE_GHERKIN_DOCUMENTS, true)
+                    .feature(INCLUDE_STEP_DEFINITIONS, true)
+                    .build();
+            this.repository = repository;
+            this.query = new Query(repository);
+        } else {
+            this.repository = null;
+            this.query = externalQuery;
+        }
     }
 
     public void write(Envelope envelope) throws IOException {
         if (streamClosed) {
             throw new IOException("Stream closed");
         }
-        repository.update(envelope);
+        // An external query is maintained by its owner
+        if (repository != null) {
+            repository.update(envelope);
+        }
+        if (warmUps != null) {
+            warmUps.update(envelope, query);
+        }
+        if (checkpoint != null) {
+            checkpoint.update(envelope, query);
+        }
+        if (overhead != null) {
+            overhead.update(envelope, query);
+        }
     }
 
     public static Builder builder(Serializer serializer) {
-        return new Builder(serializer);
+        return new Builder(requireNonNull(serializer));
+    }
+
+    /**
+     * Creates a builder for a writer that writes to multiple targets.
+     *
+     * @see Builder#target(Serializer, OutputStream)
+     */
+    public static Builder builder() {
+        return new Builder(null);
     }
 
     @Override
@@ -54,28 +110,306 @@ public final class MessagesToUsageWriter implements AutoCloseable {
         if (streamClosed) {
             return;
         }
-        try {
-            UsageReport report = new UsageReportBuilder(query).build();
-            serializer.writeValue(out, report);
+        Requirements requirements = requirements();
+        int maxMatchesPerStepDefinition = requirements.includesAllMatches()
+                ? StepUsageStore.ALL_MATCHES
+                : requirements.getMaxMatchesPerStepDefinition();
+        // Resources are closed in reverse, so the final checkpoint is written
+        // after the reports. When both fail, the checkpoint is suppressed.
+        try (CheckpointWriter finalCheckpoint = checkpoint;
+             StepUsageStore matches = new StepUsageStore(matchesHeapBudgetInBytes, matchSampleSize, maxMatchesPerStepDefinition)) {
+            UnattributedOverhead unattributedOverhead = overhead == null ? null : overhead.toUnattributedOverhead();
+            UsageReport report = new UsageReportBuilder(query, requirements, matches, warmUps, unattributedOverhead).build();
+            if (parallelSerialization && targets.size() > 1) {
+                writeInParallel(report);
+            } else {
+                for (Target target : targets) {
+                    target.write(report);
+                }
+            }
         } finally {
             try {
-                out.close();
+                closeAll();
             } finally {
                 streamClosed = true;
             }
         }
     }
 
-    public static final class Builder {
+    private Requirements requirements() {
+        return targets.stream()
+                .map(target -> target.serializer.requirements())
+                .reduce(Requirements::union)
+                .orElseGet(Requirements::unused);
+    }
+
+    private void writeInParallel(UsageReport report) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(targets.size());
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Target target : targets) {
+                futures.add(executor.submit(() -> {
+                    target.write(report);
+                    return null;
+                }));
+            }
+            awaitAll(futures);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitAll(List<Future<Void>> futures) throws IOException {
+        IOException exception = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exception = addSuppressed(exception, new InterruptedIOException(e.getMessage()));
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException ioException) {
+                    exception = addSuppressed(exception, ioException);
+                } else if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                } else {
+                    throw new IllegalStateException(cause);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private void closeAll() throws IOException {
+        IOException exception = null;
+        for (Target target : targets) {
+            try {
+                target.out.close();
+            } catch (IOException e) {
+                exception = addSuppressed(exception, e);
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private static IOException addSuppressed(@Nullable IOException first, IOException next) {
+        if (first == null) {
+            return next;
+        }
+        first.addSuppressed(next);
+        return first;
+    }
+
+    private static final class Target {
         private final Serializer serializer;
+        private final OutputStreamWriter out;
 
-        private Builder(Serializer serializer) {
+        private Target(Serializer serializer, OutputStream out) {
             this.serializer = requireNonNull(serializer);
+            this.out = new OutputStreamWriter(
+                    requireNonNull(out),
+                    StandardCharsets.UTF_8);
         }
 
+        private void write(UsageReport report) throws IOException {
+            serializer.writeValue(out, report);
+            out.flush();
+        }
+    }
+
+    public static final class Builder {
+        private static final Duration DEFAULT_CHECKPOINT_INTERVAL = Duration.ofSeconds(30);
+        private final @Nullable Serializer serializer;
+        private final List<Target> targets = new ArrayList<>();
+        private boolean parallelSerialization = false;
+        private long matchesHeapBudgetInBytes = StepUsageStore.UNLIMITED_HEAP_BUDGET;
+        private int matchSampleSize = StepUsageStore.NO_SAMPLING;
+        private int warmUpExecutions = 0;
+        private @Nullable Path checkpointDirectory;
+        private Duration checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        private @Nullable Query query;
+        private boolean unattributedOverhead = false;
+
+        private Builder(@Nullable Serializer serializer) {
+            this.serializer = serializer;
+        }
+
+        /**
+         * Adds a target to write the usage report to.
+         * <p>
+         * All targets share the same ingested messages and usage report.
+         */
+        public Builder target(Serializer serializer, OutputStream out) {
+            targets.add(new Target(serializer, out));
+            return this;
+        }
+
+        /**
+         * Serialize the usage report to all targets in parallel.
+         * <p>
+         * Serializers must not depend on being invoked sequentially.
+         */
+        public Builder parallelSerialization(boolean parallel) {
+            this.parallelSerialization = parallel;
+            return this;
+        }
+
+        /**
+         * Limits the heap used to store the matches of step definitions.
+         * <p>
+         * Once the budget is exceeded, matches are appended to temporary files
+         * and read back when the report is written. The temporary files are
+         * removed when the writer is closed. A budget of {@code 0} spills all
+         * matches to disk.
+         * <p>
+         * When no target requires all matches, only the slowest matches are
+         * kept and nothing is spilled.
+         */
+        public Builder spillMatchesToDisk(long heapBudgetInBytes) {
+            if (heapBudgetInBytes < 0) {
+                throw new IllegalArgumentException("heapBudgetInBytes must not be negative, was " + heapBudgetInBytes);
+            }
+            this.matchesHeapBudgetInBytes = heapBudgetInBytes;
+            return this;
+        }
+
+        /**
+         * Keep only a uniform random sample of the matches of each step
+         * definition.
+         * <p>
+         * Statistics are still calculated from all matches. The report
+         * indicates the matches are a sample with
+         * {@link UsageReport#getSampleSize()}. When sampling, matches are
+         * never spilled to disk.
+         */
+        public Builder sampleMatches(int maxMatchesPerStepDefinition) {
+            if (maxMatchesPerStepDefinition <= 0) {
+                throw new IllegalArgumentException("maxMatchesPerStepDefinition must be positive, was " + maxMatchesPerStepDefinition);
+            }
+            this.matchSampleSize = maxMatchesPerStepDefinition;
+            return this;
+        }
+
+        /**
+         * Report the first executions of each step definition separately
+         * from the steady state.
+         * <p>
+         * Executions are ordered by the time they were written, which is
+         * the time they finished. The report then includes the warm-up
+         * penalty of each step definition and whether the steady state is
+         * drifting, see
+         * {@link UsageReport.StepDefinitionUsage#getWarmUp()}.
+         */
+        public Builder warmUpExecutions(int n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("n must be positive, was " + n);
+            }
+            this.warmUpExecutions = n;
+            return this;
+        }
+
+        /**
+         * Periodically checkpoint the statistics of each step definition to
+         * {@code directory}.
+         * <p>
+         * If the writer is never closed, e.g. because the process was
+         * killed, a report can still be recovered from the last checkpoint
+         * with {@link UsageCheckpoint#recover(Path)}. Each checkpoint only
+         * writes the step definitions that changed since the previous one.
+         * A final checkpoint is written when the writer is closed.
+         * <p>
+         * Checkpoints are written every 30 seconds. When no messages are
+         * written, e.g. while a step hangs, a background thread writes any
+         * changes that were not checkpointed yet.
+         */
+        public Builder checkpoint(Path directory) {
+            return checkpoint(directory, DEFAULT_CHECKPOINT_INTERVAL);
+        }
+
+        /**
+         * Periodically checkpoint the statistics of each step definition to
+         * {@code directory}, at most once per {@code interval}.
+         * <p>
+         * Each checkpoint is synced to disk, so short intervals slow down
+         * the test run.
+         *
+         * @see #checkpoint(Path)
+         */
+        public Builder checkpoint(Path directory, Duration interval) {
+            if (interval.isNegative() || interval.isZero()) {
+                throw new IllegalArgumentException("interval must be positive, was " + interval);
+            }
+            this.checkpointDirectory = requireNonNull(directory);
+            this.checkpointInterval = interval;
+            return this;
+        }
+
+        /**
+         * Compare the wall time of each test case with the summed duration
+         * of its steps.
+         * <p>
+         * The difference is aggregated per scenario, feature and glue class
+         * while messages are written, see
+         * {@link UsageReport#getUnattributedOverhead()}.
+         */
+        public Builder unattributedOverhead(boolean include) {
+            this.unattributedOverhead = include;
+            return this;
+        }
+
+        /**
+         * Builds the report from a query that is maintained elsewhere,
+         * instead of keeping a private copy of all messages.
+         * <p>
+         * The writer only reads from {@code query}. Its owner must update the
+         * repository behind it with every message, including gherkin
+         * documents and step definitions, before writing it to this writer
+         * and before this writer is closed. Messages written to this writer
+         * are still used for checkpoints and the unattributed overhead.
+         */
+        public Builder query(Query query) {
+            this.query = requireNonNull(query);
+            return this;
+        }
+
+        private @Nullable WarmUpAccumulator createWarmUpAccumulator() {
+            return warmUpExecutions > 0 ? new WarmUpAccumulator(warmUpExecutions) : null;
+        }
+
+        private @Nullable CheckpointWriter createCheckpointWriter() {
+            Path directory = checkpointDirectory;
+            return directory == null ? null : new CheckpointWriter(directory, checkpointInterval);
+        }
+
+        /**
+         * Builds a writer that writes to {@code out} using the serializer
+         * this builder was created with, and to any other targets.
+         */
         public MessagesToUsageWriter build(OutputStream out) {
             requireNonNull(out);
-            return new MessagesToUsageWriter(out, serializer);
+            if (serializer == null) {
+                throw new IllegalStateException("No serializer was provided, use build() instead");
+            }
+            List<Target> targets = new ArrayList<>();
+            targets.add(new Target(serializer, out));
+            targets.addAll(this.targets);
+            return new MessagesToUsageWriter(targets, parallelSerialization, matchesHeapBudgetInBytes, matchSampleSize, createWarmUpAccumulator(), createCheckpointWriter(), unattributedOverhead ? new OverheadAccumulator() : null, query);
+        }
+
+        /**
+         * Builds a writer that writes to the targets added with
+         * {@link #target(Serializer, OutputStream)}.
+         */
+        public MessagesToUsageWriter build() {
+            if (targets.isEmpty()) {
+                throw new IllegalStateException("No targets were provided");
+            }
+            return new MessagesToUsageWriter(new ArrayList<>(targets), parallelSerialization, matchesHeapBudgetInBytes, matchSampleSize, createWarmUpAccumulator(), createCheckpointWriter(), unattributedOverhead ? new OverheadAccumulator() : null, query);
         }
     }
 
@@ -84,5 +418,89 @@ public final class MessagesToUsageWriter implements AutoCloseable {
 
         void writeValue(Writer writer, UsageReport value) throws IOException;
 
+        /**
+         * The parts of the usage report this serializer reads.
+         * <p>
+         * Parts that are not required are not created and are left empty in
+         * the report. By default, all matches are required.
+         */
+        default Requirements requirements() {
+            return Requirements.allMatches();
+        }
+
+    }
+
+    /**
+     * Declares which parts of a {@link UsageReport} are required.
+     * <p>
+     * Every report contains all step definitions and the number of steps they
+     * matched. Statistics and matches are only included when required.
+     */
+    public static final class Requirements {
+        private static final int ALL_MATCHES = -1;
+        private static final Requirements UNUSED = new Requirements(false, 0);
+        private static final Requirements STATISTICS = new Requirements(true, 0);
+        private static final Requirements ALL = new Requirements(true, ALL_MATCHES);
+
+        private final boolean statistics;
+        private final int maxMatchesPerStepDefinition;
+
+        private Requirements(boolean statistics, int maxMatchesPerStepDefinition) {
+            this.statistics = statistics;
+            this.maxMatchesPerStepDefinition = maxMatchesPerStepDefinition;
+        }
+
+        /**
+         * Only the number of steps matched by each step definition is
+         * required. Sufficient to find unused step definitions.
+         */
+        public static Requirements unused() {
+            return UNUSED;
+        }
+
+        /**
+         * Only the duration statistics of each step definition are required.
+         */
+        public static Requirements statistics() {
+            return STATISTICS;
+        }
+
+        /**
+         * The statistics and the {@code n} slowest matches of each step
+         * definition are required.
+         * <p>
+         * A negative value means all matches are required.
+         */
+        public static Requirements topMatches(int n) {
+            return n < 0 ? ALL : new Requirements(true, n);
+        }
+
+        /**
+         * The statistics and all matches of each step definition are
+         * required.
+         */
+        public static Requirements allMatches() {
+            return ALL;
+        }
+
+        boolean includesStatistics() {
+            return statistics;
+        }
+
+        boolean includesAllMatches() {
+            return maxMatchesPerStepDefinition == ALL_MATCHES;
+        }
+
+        int getMaxMatchesPerStepDefinition() {
+            return maxMatchesPerStepDefinition;
+        }
+
+        Requirements union(Requirements other) {
+            boolean statistics = this.statistics || other.statistics;
+            if (includesAllMatches() || other.includesAllMatches()) {
+                return ALL;
+            }
+            return new Requirements(statistics, Math.max(maxMatchesPerStepDefinition, other.maxMatchesPerStepDefinition));
+        }
     }
 }
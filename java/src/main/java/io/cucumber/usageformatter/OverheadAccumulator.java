@@ -0,0 +1,188 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.Convertor;
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.messages.types.Location;
+import io.cucumber.messages.types.Pickle;
+import io.cucumber.messages.types.StepDefinition;
+import io.cucumber.messages.types.TestCaseFinished;
+import io.cucumber.messages.types.TestCaseStarted;
+import io.cucumber.messages.types.TestStep;
+import io.cucumber.messages.types.TestStepFinished;
+import io.cucumber.query.Query;
+import io.cucumber.usageformatter.UsageReport.Overhead;
+import io.cucumber.usageformatter.UsageReport.UnattributedOverhead;
+import org.jspecify.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Accumulates the time spent in test cases outside of their steps while
+ * messages are written.
+ * <p>
+ * Only running test cases and the totals per scenario, feature and glue class
+ * are kept.
+ */
+final class OverheadAccumulator {
+
+    /**
+     * Test cases without steps that resolve to a glue class, e.g. test cases
+     * with only hooks, or undefined or ambiguous steps.
+     */
+    static final String NO_GLUE_CLASS = "(no glue class)";
+
+    private final Map<String, String> glueClassByStepDefinitionId = new HashMap<>();
+    private final Map<String, Running> running = new HashMap<>();
+    private final Map<String, Totals> scenarios = new LinkedHashMap<>();
+    private final Map<String, Totals> features = new LinkedHashMap<>();
+    private final Map<String, Totals> glueClasses = new LinkedHashMap<>();
+
+    void update(Envelope envelope, Query query) {
+        Optional<StepDefinition> stepDefinition = envelope.getStepDefinition();
+        if (stepDefinition.isPresent()) {
+            add(stepDefinition.get());
+        }
+        Optional<TestCaseStarted> testCaseStarted = envelope.getTestCaseStarted();
+        if (testCaseStarted.isPresent()) {
+            running.put(testCaseStarted.get().getId(), new Running(testCaseStarted.get()));
+        }
+        Optional<TestStepFinished> testStepFinished = envelope.getTestStepFinished();
+        if (testStepFinished.isPresent()) {
+            add(testStepFinished.get(), query);
+        }
+        Optional<TestCaseFinished> testCaseFinished = envelope.getTestCaseFinished();
+        if (testCaseFinished.isPresent()) {
+            add(testCaseFinished.get(), query);
+        }
+    }
+
+    private void add(StepDefinition stepDefinition) {
+        // Other languages have no glue classes, the file is the closest match
+        SourceReferenceFormatter.formatGlueClass(stepDefinition.getSourceReference())
+                .or(() -> stepDefinition.getSourceReference().getUri())
+                .ifPresent(glueClass -> glueClassByStepDefinitionId.put(stepDefinition.getId(), glueClass));
+    }
+
+    private void add(TestStepFinished testStepFinished, Query query) {
+        Running testCase = running.get(testStepFinished.getTestCaseStartedId());
+        if (testCase == null) {
+            return;
+        }
+        testCase.stepNanos += Durations.toNanos(testStepFinished.getTestStepResult().getDuration());
+        List<String> stepDefinitionIds = query.findTestStepBy(testStepFinished)
+                .flatMap(TestStep::getStepDefinitionIds)
+                .orElse(List.of());
+        // Consistent with the report, ambiguous steps are not attributed
+        if (stepDefinitionIds.size() == 1) {
+            String glueClass = glueClassByStepDefinitionId.get(stepDefinitionIds.get(0));
+            if (glueClass != null) {
+                testCase.glueClasses.add(glueClass);
+            }
+        }
+    }
+
+    private void add(TestCaseFinished testCaseFinished, Query query) {
+        Running testCase = running.remove(testCaseFinished.getTestCaseStartedId());
+        if (testCase == null) {
+            return;
+        }
+        long wallNanos = Math.max(0, Durations.toNanos(testCaseFinished.getTimestamp()) - Durations.toNanos(testCase.started.getTimestamp()));
+        long stepNanos = testCase.stepNanos;
+
+        Optional<Pickle> pickle = query.findPickleBy(testCase.started);
+        if (pickle.isPresent()) {
+            String uri = pickle.get().getUri();
+            String location = query.findLocationOf(pickle.get())
+                    .map(Location::getLine)
+                    .map(line -> uri + ":" + line)
+                    .orElse(uri);
+            scenarios.computeIfAbsent(pickle.get().getId(), id -> new Totals(pickle.get().getName(), location))
+                    .add(1, wallNanos, stepNanos);
+            features.computeIfAbsent(uri, name -> new Totals(name, null))
+                    .add(1, wallNanos, stepNanos);
+        }
+
+        // Divided evenly, the first glue classes also get the remainder. So
+        // the glue classes add up to the total of all test cases.
+        List<String> used = testCase.glueClasses.isEmpty() ? List.of(NO_GLUE_CLASS) : new ArrayList<>(testCase.glueClasses);
+        int n = used.size();
+        for (int i = 0; i < n; i++) {
+            glueClasses.computeIfAbsent(used.get(i), name -> new Totals(name, null))
+                    .add(1, share(wallNanos, n, i), share(stepNanos, n, i));
+        }
+    }
+
+    private static long share(long nanos, int n, int i) {
+        return nanos / n + (i < nanos % n ? 1 : 0);
+    }
+
+    UnattributedOverhead toUnattributedOverhead() {
+        return new UnattributedOverhead(
+                toOverheads(scenarios.values()),
+                toOverheads(features.values()),
+                toOverheads(glueClasses.values())
+        );
+    }
+
+    private static List<Overhead> toOverheads(Collection<Totals> totals) {
+        List<Totals> ordered = new ArrayList<>(totals);
+        ordered.sort((a, b) -> Long.compare(b.unattributedNanos(), a.unattributedNanos()));
+        List<Overhead> overheads = new ArrayList<>(ordered.size());
+        for (Totals total : ordered) {
+            overheads.add(new Overhead(
+                    total.name,
+                    total.location,
+                    total.testCases,
+                    Convertor.toMessage(Duration.ofNanos(total.wallNanos)),
+                    Convertor.toMessage(Duration.ofNanos(total.stepNanos)),
+                    Convertor.toMessage(Duration.ofNanos(total.unattributedNanos()))
+            ));
+        }
+        return overheads;
+    }
+
+    private static final class Running {
+        private final TestCaseStarted started;
+        private final Set<String> glueClasses = new LinkedHashSet<>();
+        private long stepNanos;
+
+        private Running(TestCaseStarted started) {
+            this.started = requireNonNull(started);
+        }
+    }
+
+    private static final class Totals {
+        private final String name;
+        private final @Nullable String location;
+        private int testCases;
+        private long wallNanos;
+        private long stepNanos;
+
+        private Totals(String name, @Nullable String location) {
+            this.name = requireNonNull(name);
+            this.location = location;
+        }
+
+        private void add(int testCases, long wallNanos, long stepNanos) {
+            this.testCases += testCases;
+            this.wallNanos += wallNanos;
+            this.stepNanos += stepNanos;
+        }
+
+        private long unattributedNanos() {
+            // Steps may overlap the test case boundaries due to clock skew
+            return Math.max(0, wallNanos - stepNanos);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.types.Duration;
+import io.cucumber.usageformatter.UsageReport.Overhead;
+import io.cucumber.usageformatter.UsageReport.UnattributedOverhead;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.StringJoiner;
+
+import static io.cucumber.usageformatter.Durations.formatDuration;
+import static io.cucumber.usageformatter.Durations.toBigDecimalSeconds;
+import static java.lang.System.lineSeparator;
+import static java.math.RoundingMode.HALF_EVEN;
+
+/**
+ * Shows where the wall time of test cases is not spent in steps, per
+ * scenario, feature and glue class. Largest first.
+ * <p>
+ * Requires the writer to collect the overhead with
+ * {@link MessagesToUsageWriter.Builder#unattributedOverhead(boolean)}.
+ */
+public final class OverheadReportSerializer implements MessagesToUsageWriter.Serializer {
+    private final boolean[] leftAlignColumn = {true, false, false, false, false, false, true};
+    private final int maxRows;
+
+    /**
+     * Shows all scenarios, features and glue classes.
+     */
+    public OverheadReportSerializer() {
+        this(-1);
+    }
+
+    /**
+     * Shows at most {@code maxRows} scenarios, features and glue classes
+     * each. A negative value shows all.
+     */
+    public OverheadReportSerializer(int maxRows) {
+        this.maxRows = maxRows;
+    }
+
+    @Override
+    public void writeValue(Writer writer, UsageReport value) throws IOException {
+        Optional<UnattributedOverhead> unattributedOverhead = value.getUnattributedOverhead();
+        if (unattributedOverhead.isEmpty()) {
+            return;
+        }
+        StringJoiner joiner = new StringJoiner(lineSeparator(), lineSeparator(), "").setEmptyValue("");
+        add(joiner, "Scenario", unattributedOverhead.get().getScenarios());
+        add(joiner, "Feature", unattributedOverhead.get().getFeatures());
+        add(joiner, "Glue", unattributedOverhead.get().getGlueClasses());
+        writer.append(joiner.toString());
+    }
+
+    private void add(StringJoiner joiner, String header, List<Overhead> overheads) {
+        if (overheads.isEmpty()) {
+            return;
+        }
+        Table table = new Table(header, "Test cases", "Wall time", "Step time", "Unattributed", "%", "Location");
+        int rows = maxRows < 0 ? overheads.size() : Math.min(maxRows, overheads.size());
+        for (Overhead overhead : overheads.subList(0, rows)) {
+            table.add(
+                    overhead.getName(),
+                    String.valueOf(overhead.getTestCases()),
+                    formatDuration(overhead.getWallTime()),
+                    formatDuration(overhead.getStepTime()),
+                    formatDuration(overhead.getUnattributed()),
+                    formatPercentage(overhead.getUnattributed(), overhead.getWallTime()),
+                    overhead.getLocation().orElse("")
+            );
+        }
+        joiner.add(TableFormatter.format(table, leftAlignColumn));
+        if (rows < overheads.size()) {
+            joiner.add("showing " + rows + " of " + overheads.size());
+        }
+    }
+
+    @Override
+    public MessagesToUsageWriter.Requirements requirements() {
+        return MessagesToUsageWriter.Requirements.unused();
+    }
+
+    private static String formatPercentage(Duration part, Duration whole) {
+        BigDecimal wholeSeconds = toBigDecimalSeconds(whole);
+        if (wholeSeconds.signum() == 0) {
+            return "";
+        }
+        return toBigDecimalSeconds(part).movePointRight(2).divide(wholeSeconds, 0, HALF_EVEN).toPlainString() + "%";
+    }
+}
@@ -0,0 +1,78 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.Convertor;
+import io.cucumber.messages.types.Location;
+import io.cucumber.messages.types.Pickle;
+import io.cucumber.messages.types.PickleStep;
+import io.cucumber.messages.types.TestStep;
+import io.cucumber.messages.types.TestStepFinished;
+import io.cucumber.query.Query;
+import io.cucumber.usageformatter.UsageReport.StepUsage;
+import org.jspecify.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Assigns a dense index to each pickle step and keeps the details needed to
+ * create a {@link StepUsage}.
+ * <p>
+ * A pickle step is executed at least once, and more often when retried. By
+ * looking up the details once per pickle step, matches can be stored as a
+ * duration and an index.
+ */
+final class PickleStepTable {
+
+    static final int NOT_FOUND = -1;
+
+    private final Query query;
+    private final Map<String, Integer> indexByPickleStepId = new HashMap<>();
+    private final List<String> texts = new ArrayList<>();
+    private final List<String> uris = new ArrayList<>();
+    private final List<@Nullable Location> locations = new ArrayList<>();
+
+    PickleStepTable(Query query) {
+        this.query = requireNonNull(query);
+    }
+
+    int indexOf(TestStepFinished testStepFinished, TestStep testStep) {
+        Optional<String> pickleStepId = testStep.getPickleStepId();
+        if (pickleStepId.isEmpty()) {
+            return NOT_FOUND;
+        }
+        Integer index = indexByPickleStepId.get(pickleStepId.get());
+        if (index != null) {
+            return index;
+        }
+        int created = create(testStepFinished, testStep);
+        indexByPickleStepId.put(pickleStepId.get(), created);
+        return created;
+    }
+
+    private int create(TestStepFinished testStepFinished, TestStep testStep) {
+        Optional<PickleStep> pickleStep = query.findPickleStepBy(testStep);
+        Optional<Pickle> pickle = query.findPickleBy(testStepFinished);
+        if (pickleStep.isEmpty() || pickle.isEmpty()) {
+            return NOT_FOUND;
+        }
+        texts.add(pickleStep.get().getText());
+        uris.add(pickle.get().getUri());
+        locations.add(query.findLocationOf(pickle.get()).orElse(null));
+        return texts.size() - 1;
+    }
+
+    StepUsage createStepUsage(int index, long nanos) {
+        return new StepUsage(
+                texts.get(index),
+                Convertor.toMessage(Duration.ofNanos(nanos)),
+                uris.get(index),
+                locations.get(index)
+        );
+    }
+}
@@ -1,11 +1,15 @@
 package io.cucumber.usageformatter;
 
+import io.cucumber.messages.types.JavaMethod;
+import io.cucumber.messages.types.JavaStackTraceElement;
 import io.cucumber.messages.types.Location;
 import io.cucumber.messages.types.SourceReference;
 
 import java.util.Optional;
 import java.util.function.Function;
 
+import static java.util.Objects.requireNonNull;
+
 final class SourceReferenceFormatter {
     private final Function<String, String> uriFormatter;
 
@@ -37,4 +41,22 @@ final class SourceReferenceFormatter {
         }
         return Optional.empty();
     }
+
+    /**
+     * Removes a given prefix from uris that start with it.
+     */
+    static Function<String, String> removeUriPrefix(String prefix) {
+        requireNonNull(prefix);
+        return uri -> uri.startsWith(prefix) ? uri.substring(prefix.length()) : uri;
+    }
+
+    /**
+     * The class that declares a Java step definition or hook.
+     */
+    static Optional<String> formatGlueClass(SourceReference sourceReference) {
+        if (sourceReference.getJavaMethod().isPresent()) {
+            return sourceReference.getJavaMethod().map(JavaMethod::getClassName);
+        }
+        return sourceReference.getJavaStackTraceElement().map(JavaStackTraceElement::getClassName);
+    }
 }
@@ -0,0 +1,404 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.usageformatter.UsageReport.StepUsage;
+import org.jspecify.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Step usages stored in an append-only file.
+ * <p>
+ * Each record is a duration in nanoseconds followed by the index of the
+ * pickle step in the {@link PickleStepTable}. Step usages are created when
+ * read.
+ */
+final class SpilledStepUsages extends StepUsageList {
+
+    static final int RECORD_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int READ_BUFFER_RECORDS = 1024;
+
+    private final Path file;
+    private final int size;
+    private final PickleStepTable pickleSteps;
+    private final int sortBufferRecords;
+    private @Nullable Cursor indexCursor;
+    private int nextIndex;
+
+    SpilledStepUsages(Path file, int size, PickleStepTable pickleSteps, int sortBufferRecords) {
+        this.file = requireNonNull(file);
+        this.size = size;
+        this.pickleSteps = requireNonNull(pickleSteps);
+        this.sortBufferRecords = sortBufferRecords;
+    }
+
+    static void append(Path file, long[] nanos, int[] pickleStepIndexes, int size) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, CREATE, APPEND)))) {
+            for (int i = 0; i < size; i++) {
+                out.writeLong(nanos[i]);
+                out.writeInt(pickleStepIndexes[i]);
+            }
+        }
+    }
+
+    /**
+     * Reuses the cursor of the previous call when reading the next index, so
+     * reading by index in order reads the file a chunk at a time.
+     */
+    @Override
+    public synchronized StepUsage get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        try {
+            Cursor cursor = this.indexCursor;
+            if (cursor == null || index != nextIndex) {
+                cursor = new Cursor(file, index, READ_BUFFER_RECORDS);
+                this.indexCursor = cursor;
+            }
+            cursor.advance();
+            nextIndex = index + 1;
+            return pickleSteps.createStepUsage(cursor.pickleStepIndex(), cursor.nanos());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<StepUsage> iterator() {
+        Cursor cursor = new Cursor(file, 0, READ_BUFFER_RECORDS);
+        return new Iterator<>() {
+            private boolean advanced;
+            private boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (!advanced) {
+                    hasNext = advance(cursor);
+                    advanced = true;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public StepUsage next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                advanced = false;
+                return pickleSteps.createStepUsage(cursor.pickleStepIndex(), cursor.nanos());
+            }
+        };
+    }
+
+    /**
+     * Splits by record ranges, each read with its own cursor, so the step
+     * usages can be traversed in parallel.
+     */
+    @Override
+    public Spliterator<StepUsage> spliterator() {
+        return new RangeSpliterator(0, size);
+    }
+
+    /**
+     * Iterates over the step usages from slowest to fastest.
+     * <p>
+     * When the records don't fit in the sort buffer, they are sorted in runs
+     * that are written to disk and then merged.
+     */
+    @Override
+    Iterator<StepUsage> slowestFirst() {
+        try {
+            if (size <= sortBufferRecords) {
+                return readInMemory().slowestFirst();
+            }
+            return mergeRuns(createSortedRuns());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * When more step usages are requested than fit in the sort buffer, the
+     * merged runs are written to a file instead.
+     */
+    @Override
+    List<StepUsage> slowest(int n) {
+        int limit = Math.min(n, size);
+        try {
+            if (size <= sortBufferRecords) {
+                return readInMemory().slowest(limit);
+            }
+            if (limit <= sortBufferRecords) {
+                List<StepUsage> slowest = new ArrayList<>(limit);
+                Iterator<StepUsage> iterator = slowestFirst();
+                while (slowest.size() < limit && iterator.hasNext()) {
+                    slowest.add(iterator.next());
+                }
+                return slowest;
+            }
+            return new SpilledStepUsages(writeMergedRuns(createSortedRuns(), limit), limit, pickleSteps, sortBufferRecords);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ColumnarStepUsages readInMemory() throws IOException {
+        long[] nanos = new long[size];
+        int[] pickleStepIndexes = new int[size];
+        int read = readChunk(new Cursor(file, 0, READ_BUFFER_RECORDS), nanos, pickleStepIndexes);
+        return new ColumnarStepUsages(nanos, pickleStepIndexes, read, pickleSteps);
+    }
+
+    private List<Path> createSortedRuns() throws IOException {
+        List<Path> runs = new ArrayList<>();
+        Cursor cursor = new Cursor(file, 0, READ_BUFFER_RECORDS);
+        long[] nanos = new long[sortBufferRecords];
+        int[] pickleStepIndexes = new int[sortBufferRecords];
+        long[] sortedNanos = new long[sortBufferRecords];
+        int[] sortedPickleStepIndexes = new int[sortBufferRecords];
+        int read;
+        while ((read = readChunk(cursor, nanos, pickleStepIndexes)) > 0) {
+            int[] order = Durations.slowestFirst(nanos, read);
+            for (int i = 0; i < read; i++) {
+                sortedNanos[i] = nanos[order[i]];
+                sortedPickleStepIndexes[i] = pickleStepIndexes[order[i]];
+            }
+            // Unique per sort, the store removes any that remain on close
+            Path run = Files.createTempFile(requireNonNull(file.getParent()), file.getFileName() + "-", ".run");
+            append(run, sortedNanos, sortedPickleStepIndexes, read);
+            runs.add(run);
+        }
+        return runs;
+    }
+
+    private Path writeMergedRuns(List<Path> runs, int limit) throws IOException {
+        PriorityQueue<Run> queue = openRuns(runs);
+        Path sorted = Files.createTempFile(requireNonNull(file.getParent()), file.getFileName() + "-", ".sorted");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(sorted)))) {
+            for (int i = 0; i < limit; i++) {
+                Run run = requireNonNull(queue.poll());
+                out.writeLong(run.cursor.nanos());
+                out.writeInt(run.cursor.pickleStepIndex());
+                if (run.cursor.advance()) {
+                    queue.add(run);
+                } else {
+                    Files.deleteIfExists(run.cursor.file);
+                }
+            }
+        }
+        for (Run run : queue) {
+            Files.deleteIfExists(run.cursor.file);
+        }
+        return sorted;
+    }
+
+    private static PriorityQueue<Run> openRuns(List<Path> runs) throws IOException {
+        // Runs are consecutive, for equal durations the earlier run goes first
+        PriorityQueue<Run> queue = new PriorityQueue<>(Comparator
+                .comparingLong((Run run) -> run.cursor.nanos())
+                .reversed()
+                .thenComparingInt(run -> run.index));
+        for (int i = 0; i < runs.size(); i++) {
+            Run run = new Run(i, new Cursor(runs.get(i), 0, READ_BUFFER_RECORDS));
+            if (run.cursor.advance()) {
+                queue.add(run);
+            }
+        }
+        return queue;
+    }
+
+    private Iterator<StepUsage> mergeRuns(List<Path> runs) throws IOException {
+        PriorityQueue<Run> queue = openRuns(runs);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public StepUsage next() {
+                Run run = queue.poll();
+                if (run == null) {
+                    throw new NoSuchElementException();
+                }
+                StepUsage stepUsage = pickleSteps.createStepUsage(run.cursor.pickleStepIndex(), run.cursor.nanos());
+                if (advance(run.cursor)) {
+                    queue.add(run);
+                } else {
+                    delete(run.cursor.file);
+                }
+                return stepUsage;
+            }
+        };
+    }
+
+    private static int readChunk(Cursor cursor, long[] nanos, int[] pickleStepIndexes) throws IOException {
+        int read = 0;
+        while (read < nanos.length && cursor.advance()) {
+            nanos[read] = cursor.nanos();
+            pickleStepIndexes[read] = cursor.pickleStepIndex();
+            read++;
+        }
+        return read;
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean advance(Cursor cursor) {
+        try {
+            return cursor.advance();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private final class RangeSpliterator implements Spliterator<StepUsage> {
+        private static final int MIN_SPLIT_RECORDS = READ_BUFFER_RECORDS;
+        private int from;
+        private final int to;
+        private @Nullable Cursor cursor;
+
+        private RangeSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super StepUsage> action) {
+            if (from >= to) {
+                return false;
+            }
+            Cursor cursor = this.cursor;
+            if (cursor == null) {
+                cursor = new Cursor(file, from, Math.min(READ_BUFFER_RECORDS, to - from));
+                this.cursor = cursor;
+            }
+            if (!advance(cursor)) {
+                from = to;
+                return false;
+            }
+            from++;
+            action.accept(pickleSteps.createStepUsage(cursor.pickleStepIndex(), cursor.nanos()));
+            return true;
+        }
+
+        @Override
+        public @Nullable Spliterator<StepUsage> trySplit() {
+            // Once reading has started, the cursor is positioned in this range
+            int remaining = to - from;
+            if (cursor != null || remaining < 2 * MIN_SPLIT_RECORDS) {
+                return null;
+            }
+            int middle = from + remaining / 2;
+            RangeSpliterator prefix = new RangeSpliterator(from, middle);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+        }
+    }
+
+    private static final class Run {
+        private final int index;
+        private final Cursor cursor;
+
+        private Run(int index, Cursor cursor) {
+            this.index = index;
+            this.cursor = cursor;
+        }
+    }
+
+    /**
+     * Reads records sequentially, a chunk at a time. The file is only open
+     * while reading a chunk, so abandoned cursors don't leak file handles.
+     */
+    private static final class Cursor {
+        private final Path file;
+        private final ByteBuffer buffer;
+        private long position;
+        private long nanos;
+        private int pickleStepIndex;
+
+        private Cursor(Path file, long firstRecord, int bufferRecords) {
+            this.file = file;
+            this.buffer = ByteBuffer.allocate(bufferRecords * RECORD_BYTES);
+            this.buffer.limit(0);
+            this.position = firstRecord * RECORD_BYTES;
+        }
+
+        private boolean advance() throws IOException {
+            if (buffer.remaining() < RECORD_BYTES && !fill()) {
+                return false;
+            }
+            nanos = buffer.getLong();
+            pickleStepIndex = buffer.getInt();
+            return true;
+        }
+
+        private boolean fill() throws IOException {
+            buffer.clear();
+            try (FileChannel channel = FileChannel.open(file, READ)) {
+                while (buffer.hasRemaining()) {
+                    int read = channel.read(buffer, position);
+                    if (read < 0) {
+                        break;
+                    }
+                    position += read;
+                }
+            }
+            // Only whole records are consumed, a partial record is read again
+            int whole = buffer.position() - buffer.position() % RECORD_BYTES;
+            position -= buffer.position() - whole;
+            buffer.position(whole);
+            buffer.flip();
+            return buffer.remaining() >= RECORD_BYTES;
+        }
+
+        private long nanos() {
+            return nanos;
+        }
+
+        private int pickleStepIndex() {
+            return pickleStepIndex;
+        }
+    }
+}
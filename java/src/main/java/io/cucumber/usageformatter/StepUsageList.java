@@ -0,0 +1,28 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.usageformatter.UsageReport.StepUsage;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Step usages backed by compact storage.
+ * <p>
+ * Step usages are created only when accessed.
+ */
+abstract class StepUsageList extends AbstractList<StepUsage> {
+
+    /**
+     * Iterates over the step usages from slowest to fastest. Step usages with
+     * equal durations keep their order.
+     */
+    abstract Iterator<StepUsage> slowestFirst();
+
+    /**
+     * The {@code n} slowest step usages, slowest first, as a list that can be
+     * read repeatedly without sorting again.
+     */
+    abstract List<StepUsage> slowest(int n);
+
+}
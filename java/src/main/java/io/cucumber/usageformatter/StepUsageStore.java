@@ -0,0 +1,309 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.usageformatter.UsageReport.StepUsage;
+import org.jspecify.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+import static io.cucumber.usageformatter.SpilledStepUsages.RECORD_BYTES;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Stores the matches of each step definition as a duration and a pickle step
+ * index.
+ * <p>
+ * Matches are kept in memory until the heap budget is exceeded. Then the
+ * largest buffers are appended to a temporary file per step definition, until
+ * at most half the budget is used.
+ * <p>
+ * Alternatively, only a uniform random sample of the matches of each step
+ * definition is kept. The sample is bounded in size and never spilled.
+ * <p>
+ * When only the slowest matches are required, only those are kept. They are
+ * bounded in number and never spilled either.
+ */
+final class StepUsageStore implements Closeable {
+
+    static final long UNLIMITED_HEAP_BUDGET = Long.MAX_VALUE;
+    static final int NO_SAMPLING = -1;
+    static final int ALL_MATCHES = -1;
+    // Samples are reproducible between runs
+    private static final long SAMPLING_SEED = 0x5EED;
+    private static final int MIN_SORT_BUFFER_RECORDS = 1;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final long maxBufferedRecords;
+    private final int sampleSize;
+    private final int maxMatchesPerStepDefinition;
+    private final SplittableRandom random = new SplittableRandom(SAMPLING_SEED);
+    private final List<Columns> columns = new ArrayList<>();
+    private long bufferedRecords;
+    private @Nullable Path directory;
+
+    StepUsageStore(long heapBudgetInBytes, int sampleSize, int maxMatchesPerStepDefinition) {
+        this.maxBufferedRecords = Math.max(0, heapBudgetInBytes / RECORD_BYTES);
+        this.sampleSize = sampleSize;
+        this.maxMatchesPerStepDefinition = maxMatchesPerStepDefinition;
+    }
+
+    boolean isSampling() {
+        return sampleSize != NO_SAMPLING;
+    }
+
+    int getSampleSize() {
+        return sampleSize;
+    }
+
+    void add(int stepDefinitionIndex, long nanos, int pickleStepIndex) throws IOException {
+        while (columns.size() <= stepDefinitionIndex) {
+            columns.add(new Columns());
+        }
+        Columns matches = columns.get(stepDefinitionIndex);
+        if (isSampling()) {
+            matches.sample(nanos, pickleStepIndex, sampleSize, random);
+            return;
+        }
+        if (maxMatchesPerStepDefinition != ALL_MATCHES) {
+            matches.keepSlowest(nanos, pickleStepIndex, maxMatchesPerStepDefinition);
+            return;
+        }
+        matches.add(nanos, pickleStepIndex);
+        if (++bufferedRecords > maxBufferedRecords) {
+            spill();
+        }
+    }
+
+    /**
+     * Spilling only the largest buffers keeps the number of files opened
+     * per spill small, and spilling down to half the budget leaves room
+     * before the next spill.
+     */
+    private void spill() throws IOException {
+        Path directory = this.directory;
+        if (directory == null) {
+            directory = Files.createTempDirectory("usage-formatter-");
+            this.directory = directory;
+        }
+        List<Integer> largestFirst = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).size > 0) {
+                largestFirst.add(i);
+            }
+        }
+        largestFirst.sort(Comparator.comparingInt((Integer i) -> columns.get(i).size).reversed());
+        for (int i : largestFirst) {
+            if (bufferedRecords <= maxBufferedRecords / 2) {
+                return;
+            }
+            bufferedRecords -= columns.get(i).spill(directory, i);
+        }
+    }
+
+    /**
+     * All matches of a step definition in order of execution, or only the
+     * slowest when those are all that is kept.
+     * <p>
+     * Step usages are only created when accessed.
+     */
+    StepUsageList getMatches(int stepDefinitionIndex, PickleStepTable pickleSteps) throws IOException {
+        if (stepDefinitionIndex >= columns.size()) {
+            return new ColumnarStepUsages(new long[0], new int[0], 0, pickleSteps);
+        }
+        Columns matches = columns.get(stepDefinitionIndex);
+        if (!isSampling() && maxMatchesPerStepDefinition != ALL_MATCHES) {
+            matches.restoreExecutionOrder();
+        }
+        Path directory = this.directory;
+        Path file = matches.file;
+        if (directory == null || file == null) {
+            return new ColumnarStepUsages(matches.nanos, matches.pickleStepIndexes, matches.size, pickleSteps);
+        }
+        bufferedRecords -= matches.spill(directory, stepDefinitionIndex);
+        return new SpilledStepUsages(file, matches.spilled, pickleSteps, sortBufferRecords());
+    }
+
+    /**
+     * The {@code n} slowest matches of a step definition, slowest first.
+     */
+    List<StepUsage> getSlowestMatches(int stepDefinitionIndex, int n, PickleStepTable pickleSteps) throws IOException {
+        return getMatches(stepDefinitionIndex, pickleSteps).slowest(n);
+    }
+
+    private int sortBufferRecords() {
+        return (int) Math.max(MIN_SORT_BUFFER_RECORDS, Math.min(maxBufferedRecords, Integer.MAX_VALUE / RECORD_BYTES));
+    }
+
+    @Override
+    public void close() throws IOException {
+        Path directory = this.directory;
+        if (directory == null) {
+            return;
+        }
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            paths = walk.sorted(Comparator.reverseOrder()).collect(toList());
+        }
+        for (Path path : paths) {
+            Files.deleteIfExists(path);
+        }
+        this.directory = null;
+    }
+
+    private static final class Columns {
+        private long[] nanos = new long[INITIAL_CAPACITY];
+        private int[] pickleStepIndexes = new int[INITIAL_CAPACITY];
+        private long[] sequences = new long[0];
+        private int size;
+        private @Nullable Path file;
+        private int spilled;
+        private long seen;
+
+        private void add(long nanos, int pickleStepIndex) {
+            if (size == this.nanos.length) {
+                int capacity = size + (size >> 1);
+                this.nanos = Arrays.copyOf(this.nanos, capacity);
+                this.pickleStepIndexes = Arrays.copyOf(this.pickleStepIndexes, capacity);
+            }
+            this.nanos[size] = nanos;
+            this.pickleStepIndexes[size] = pickleStepIndex;
+            size++;
+        }
+
+        /**
+         * Reservoir sampling, Algorithm R. Every match seen so far has the
+         * same probability of being in the sample.
+         */
+        private void sample(long nanos, int pickleStepIndex, int sampleSize, SplittableRandom random) {
+            seen++;
+            if (size < sampleSize) {
+                add(nanos, pickleStepIndex);
+                return;
+            }
+            long slot = random.nextLong(seen);
+            if (slot < sampleSize) {
+                this.nanos[(int) slot] = nanos;
+                this.pickleStepIndexes[(int) slot] = pickleStepIndex;
+            }
+        }
+
+        /**
+         * Keeps the {@code n} slowest matches in a heap with the fastest at
+         * the root. Of equal durations the earliest are kept, as a stable
+         * sort would.
+         */
+        private void keepSlowest(long nanos, int pickleStepIndex, int n) {
+            long sequence = seen++;
+            if (size < n) {
+                add(nanos, pickleStepIndex);
+                if (sequences.length < this.nanos.length) {
+                    sequences = Arrays.copyOf(sequences, this.nanos.length);
+                }
+                sequences[size - 1] = sequence;
+                siftUp(size - 1);
+                return;
+            }
+            if (size == 0 || nanos <= this.nanos[0]) {
+                return;
+            }
+            this.nanos[0] = nanos;
+            this.pickleStepIndexes[0] = pickleStepIndex;
+            this.sequences[0] = sequence;
+            siftDown(0);
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (!isCloserToRoot(index, parent)) {
+                    return;
+                }
+                swap(index, parent);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int closest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && isCloserToRoot(left, closest)) {
+                    closest = left;
+                }
+                if (right < size && isCloserToRoot(right, closest)) {
+                    closest = right;
+                }
+                if (closest == index) {
+                    return;
+                }
+                swap(index, closest);
+                index = closest;
+            }
+        }
+
+        private boolean isCloserToRoot(int i, int j) {
+            return nanos[i] < nanos[j] || (nanos[i] == nanos[j] && sequences[i] > sequences[j]);
+        }
+
+        private void swap(int i, int j) {
+            long swappedNanos = nanos[i];
+            nanos[i] = nanos[j];
+            nanos[j] = swappedNanos;
+            int swappedPickleStepIndex = pickleStepIndexes[i];
+            pickleStepIndexes[i] = pickleStepIndexes[j];
+            pickleStepIndexes[j] = swappedPickleStepIndex;
+            long swappedSequence = sequences[i];
+            sequences[i] = sequences[j];
+            sequences[j] = swappedSequence;
+        }
+
+        /**
+         * Orders the slowest matches by execution, once all were added.
+         */
+        private void restoreExecutionOrder() {
+            int[] latestFirst = Durations.slowestFirst(sequences, size);
+            long[] orderedNanos = new long[size];
+            int[] orderedPickleStepIndexes = new int[size];
+            long[] orderedSequences = new long[size];
+            for (int i = 0; i < size; i++) {
+                int from = latestFirst[size - 1 - i];
+                orderedNanos[i] = nanos[from];
+                orderedPickleStepIndexes[i] = pickleStepIndexes[from];
+                orderedSequences[i] = sequences[from];
+            }
+            nanos = orderedNanos;
+            pickleStepIndexes = orderedPickleStepIndexes;
+            sequences = orderedSequences;
+        }
+
+        /**
+         * @return the number of records that were spilled
+         */
+        private int spill(Path directory, int stepDefinitionIndex) throws IOException {
+            if (size == 0) {
+                return 0;
+            }
+            Path file = this.file;
+            if (file == null) {
+                file = directory.resolve("step-definition-" + stepDefinitionIndex + ".matches");
+                this.file = file;
+            }
+            SpilledStepUsages.append(file, nanos, pickleStepIndexes, size);
+            int records = size;
+            spilled += records;
+            size = 0;
+            nanos = new long[INITIAL_CAPACITY];
+            pickleStepIndexes = new int[INITIAL_CAPACITY];
+            return records;
+        }
+    }
+}
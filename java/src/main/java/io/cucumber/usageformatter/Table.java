@@ -7,9 +7,6 @@ final class Table {
 
     private final List<String[]> rows = new ArrayList<>();
 
-    Table() {
-    }
-
     Table(String... headers) {
         this.rows.add(headers);
     }
@@ -18,11 +15,6 @@ final class Table {
         this.rows.add(row);
     }
 
-
-    void addAll(List<String[]> rows) {
-        this.rows.addAll(rows);
-    }
-
     List<String[]> getRows() {
         return rows;
     }
@@ -31,11 +23,5 @@ final class Table {
         // assumed to be square and non-sparse.
         return getRows().get(0).length;
     }
-    
-    static Table addTo(Table a, Table b) {
-        a.addAll(b.rows);
-        return a;
-    }
-
 
 }
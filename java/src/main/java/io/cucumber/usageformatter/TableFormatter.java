@@ -1,42 +1,68 @@
 package io.cucumber.usageformatter;
 
+import java.io.IOException;
 import java.util.StringJoiner;
 
 import static java.lang.System.lineSeparator;
 
 final class TableFormatter {
-    
+
     private TableFormatter(){
         /* no-op */
     }
-    
+
     static String format(Table table, boolean[] leftAlignColumn) {
         StringJoiner joiner = new StringJoiner(lineSeparator(), lineSeparator(), lineSeparator());
         int[] longestCellLengthInColumn = findLongestCellLengthInColumn(table);
         for (String[] row : table.getRows()) {
-            StringJoiner rowJoiner = new StringJoiner(" ");
-            for (int j = 0; j < row.length; j++) {
-                String newElement = renderCellWithPadding(
-                        longestCellLengthInColumn[j],
-                        row[j],
-                        leftAlignColumn[j]
-                );
-                rowJoiner.add(newElement);
-            }
-            joiner.add(rowJoiner.toString());
+            joiner.add(formatRow(row, longestCellLengthInColumn, leftAlignColumn));
         }
         return joiner.toString();
     }
 
+    /**
+     * Updates the longest cell length in each column with the given row.
+     * <p>
+     * Together with {@link #appendRow(Appendable, String[], int[], boolean[])}
+     * a table can be formatted without holding all rows in memory.
+     */
+    static void measureRow(int[] longestCellLengthInColumn, String[] row) {
+        for (int colIndex = 0; colIndex < longestCellLengthInColumn.length; colIndex++) {
+            int current = longestCellLengthInColumn[colIndex];
+            int candidate = row[colIndex].length();
+            longestCellLengthInColumn[colIndex] = Math.max(current, candidate);
+        }
+    }
+
+    /**
+     * Appends a row followed by a line separator.
+     * <p>
+     * Tables formatted row by row should be preceded by a line separator to
+     * be identical to {@link #format(Table, boolean[])}.
+     */
+    static void appendRow(Appendable out, String[] row, int[] longestCellLengthInColumn, boolean[] leftAlignColumn) throws IOException {
+        out.append(formatRow(row, longestCellLengthInColumn, leftAlignColumn));
+        out.append(lineSeparator());
+    }
+
+    private static String formatRow(String[] row, int[] longestCellLengthInColumn, boolean[] leftAlignColumn) {
+        StringJoiner rowJoiner = new StringJoiner(" ");
+        for (int j = 0; j < row.length; j++) {
+            String newElement = renderCellWithPadding(
+                    longestCellLengthInColumn[j],
+                    row[j],
+                    leftAlignColumn[j]
+            );
+            rowJoiner.add(newElement);
+        }
+        return rowJoiner.toString();
+    }
+
     private static int[] findLongestCellLengthInColumn(Table renderedCells) {
         int width = renderedCells.width();
         int[] longestCellInColumnLength = new int[width];
         for (String[] row : renderedCells.getRows()) {
-            for (int colIndex = 0; colIndex < width; colIndex++) {
-                int current = longestCellInColumnLength[colIndex];
-                int candidate = row[colIndex].length();
-                longestCellInColumnLength[colIndex] = Math.max(current, candidate);
-            }
+            measureRow(longestCellInColumnLength, row);
         }
         return longestCellInColumnLength;
     }
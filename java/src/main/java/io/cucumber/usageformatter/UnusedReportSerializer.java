@@ -19,10 +19,15 @@ public final class UnusedReportSerializer implements MessagesToUsageWriter.Seria
         writer.append(format(value));
     }
 
+    @Override
+    public MessagesToUsageWriter.Requirements requirements() {
+        return MessagesToUsageWriter.Requirements.unused();
+    }
+
     private String format(UsageReport usageReport) {
         List<UsageReport.StepDefinitionUsage> stepDefinitions = usageReport.getStepDefinitions();
         List<UsageReport.StepDefinitionUsage> unusedStepDefinitions = stepDefinitions.stream()
-                .filter(stepDefinitionUsage -> stepDefinitionUsage.getMatches().isEmpty())
+                .filter(stepDefinitionUsage -> stepDefinitionUsage.getMatchCount() == 0)
                 .collect(toList());
 
         StringJoiner joiner = new StringJoiner(lineSeparator(), lineSeparator(), "");
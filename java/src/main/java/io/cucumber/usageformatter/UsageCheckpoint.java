@@ -0,0 +1,328 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.types.JavaMethod;
+import io.cucumber.messages.types.JavaStackTraceElement;
+import io.cucumber.messages.types.Location;
+import io.cucumber.messages.types.SourceReference;
+import io.cucumber.messages.types.StepDefinitionPattern;
+import io.cucumber.messages.types.StepDefinitionPatternType;
+import io.cucumber.usageformatter.UsageReport.StepDefinitionUsage;
+import org.jspecify.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Recovers a usage report from a checkpoint.
+ * <p>
+ * A checkpoint is a directory with a manifest and segments. Each segment
+ * contains the state of the step definitions that changed since the previous
+ * segment, later segments take precedence. The manifest lists the segments
+ * and is replaced atomically, so it always describes a complete checkpoint.
+ * <p>
+ * Checkpoints contain the statistics and number of matches of each step
+ * definition, but not the matches themselves.
+ *
+ * @see MessagesToUsageWriter.Builder#checkpoint(Path, java.time.Duration)
+ */
+public final class UsageCheckpoint {
+
+    static final String MANIFEST = "manifest";
+    private static final String MANIFEST_HEADER = "usage-formatter-checkpoint 1";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+    private static final int SEGMENT_MAGIC = 0x55534731;
+    static final long NOT_USED = -1;
+
+    private UsageCheckpoint() {
+        /* no-op */
+    }
+
+    /**
+     * Builds a usage report from the last complete checkpoint in
+     * {@code directory}.
+     *
+     * @throws NoSuchFileException if the directory does not contain a
+     *                             checkpoint
+     */
+    public static UsageReport recover(Path directory) throws IOException {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        for (Path segment : readManifest(directory)) {
+            for (Entry entry : readSegment(segment)) {
+                entries.put(entry.id, entry);
+            }
+        }
+        // Consistent with the report built by the writer, used step
+        // definitions are ordered by first use
+        List<Entry> ordered = new ArrayList<>(entries.values());
+        ordered.sort(Comparator.comparing((Entry entry) -> entry.firstUse == NOT_USED)
+                .thenComparingLong(entry -> entry.firstUse));
+
+        List<StepDefinitionUsage> stepDefinitions = new ArrayList<>(ordered.size());
+        for (Entry entry : ordered) {
+            stepDefinitions.add(new StepDefinitionUsage(
+                    entry.pattern,
+                    entry.sourceReference,
+                    entry.accumulator,
+                    Collections.emptyList(),
+                    entry.matchCount
+            ));
+        }
+        return new UsageReport(stepDefinitions, null);
+    }
+
+    static List<Path> readManifest(Path directory) throws IOException {
+        List<String> lines = Files.readAllLines(directory.resolve(MANIFEST), UTF_8);
+        if (lines.isEmpty() || !MANIFEST_HEADER.equals(lines.get(0))) {
+            throw new IOException("Not a usage formatter checkpoint: " + directory);
+        }
+        List<Path> segments = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            segments.add(directory.resolve(line));
+        }
+        return segments;
+    }
+
+    /**
+     * Replaces the manifest, only once it is completely written.
+     */
+    static void writeManifest(Path directory, List<Path> segments) throws IOException {
+        StringBuilder manifest = new StringBuilder(MANIFEST_HEADER).append('\n');
+        for (Path segment : segments) {
+            manifest.append(requireNonNull(segment.getFileName())).append('\n');
+        }
+        Path temp = Files.createTempFile(directory, MANIFEST + "-", ".tmp");
+        try {
+            writeDurably(temp, out -> out.write(manifest.toString().getBytes(UTF_8)));
+            Files.move(temp, directory.resolve(MANIFEST), ATOMIC_MOVE, REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        syncDirectory(directory);
+    }
+
+    /**
+     * Makes the rename of the manifest durable. Not all platforms can open
+     * a directory, in which case the rename is left to the file system.
+     */
+    private static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    static Path writeSegment(Path directory, Collection<Entry> entries) throws IOException {
+        Path segment = Files.createTempFile(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        writeDurably(segment, out -> {
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(SEGMENT_MAGIC);
+            data.writeInt(entries.size());
+            for (Entry entry : entries) {
+                writeEntry(data, entry);
+            }
+            data.flush();
+        });
+        return segment;
+    }
+
+    static boolean isSegment(Path path) {
+        String fileName = String.valueOf(path.getFileName());
+        return fileName.startsWith(SEGMENT_PREFIX) && fileName.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static void writeDurably(Path file, OutputConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, WRITE)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+            consumer.accept(out);
+            out.flush();
+            channel.force(true);
+        }
+    }
+
+    static List<Entry> readSegment(Path segment) throws IOException {
+        try (DataInputStream data = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            if (data.readInt() != SEGMENT_MAGIC) {
+                throw new IOException("Not a usage formatter checkpoint segment: " + segment);
+            }
+            int size = data.readInt();
+            List<Entry> entries = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                entries.add(readEntry(data));
+            }
+            return entries;
+        } catch (EOFException e) {
+            throw new IOException("Incomplete usage formatter checkpoint segment: " + segment, e);
+        }
+    }
+
+    private static void writeEntry(DataOutputStream data, Entry entry) throws IOException {
+        writeString(data, entry.id);
+        writeString(data, entry.pattern.getSource());
+        writeString(data, entry.pattern.getType().name());
+        writeSourceReference(data, entry.sourceReference);
+        data.writeInt(entry.matchCount);
+        data.writeLong(entry.firstUse);
+        DurationAccumulator accumulator = entry.accumulator;
+        data.writeLong(accumulator.getCount());
+        data.writeLong(accumulator.getSumNanos());
+        data.writeLong(accumulator.getSumOfSquaresHigh());
+        data.writeLong(accumulator.getSumOfSquaresLow());
+    }
+
+    private static Entry readEntry(DataInputStream data) throws IOException {
+        String id = readString(data);
+        StepDefinitionPattern pattern = new StepDefinitionPattern(
+                readString(data),
+                StepDefinitionPatternType.valueOf(readString(data))
+        );
+        SourceReference sourceReference = readSourceReference(data);
+        Entry entry = new Entry(id, pattern, sourceReference);
+        entry.matchCount = data.readInt();
+        entry.firstUse = data.readLong();
+        entry.accumulator = new DurationAccumulator(data.readLong(), data.readLong(), data.readLong(), data.readLong());
+        return entry;
+    }
+
+    private static void writeSourceReference(DataOutputStream data, SourceReference sourceReference) throws IOException {
+        writeOptionalString(data, sourceReference.getUri().orElse(null));
+        Optional<JavaMethod> javaMethod = sourceReference.getJavaMethod();
+        data.writeBoolean(javaMethod.isPresent());
+        if (javaMethod.isPresent()) {
+            writeString(data, javaMethod.get().getClassName());
+            writeString(data, javaMethod.get().getMethodName());
+            List<String> methodParameterTypes = javaMethod.get().getMethodParameterTypes();
+            data.writeInt(methodParameterTypes.size());
+            for (String methodParameterType : methodParameterTypes) {
+                writeString(data, methodParameterType);
+            }
+        }
+        Optional<JavaStackTraceElement> javaStackTraceElement = sourceReference.getJavaStackTraceElement();
+        data.writeBoolean(javaStackTraceElement.isPresent());
+        if (javaStackTraceElement.isPresent()) {
+            writeString(data, javaStackTraceElement.get().getClassName());
+            writeString(data, javaStackTraceElement.get().getFileName());
+            writeString(data, javaStackTraceElement.get().getMethodName());
+        }
+        Optional<Location> location = sourceReference.getLocation();
+        data.writeBoolean(location.isPresent());
+        if (location.isPresent()) {
+            data.writeLong(location.get().getLine());
+            Optional<Long> column = location.get().getColumn();
+            data.writeBoolean(column.isPresent());
+            if (column.isPresent()) {
+                data.writeLong(column.get());
+            }
+        }
+    }
+
+    private static SourceReference readSourceReference(DataInputStream data) throws IOException {
+        String uri = readOptionalString(data);
+        JavaMethod javaMethod = null;
+        if (data.readBoolean()) {
+            String className = readString(data);
+            String methodName = readString(data);
+            int size = data.readInt();
+            List<String> methodParameterTypes = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                methodParameterTypes.add(readString(data));
+            }
+            javaMethod = new JavaMethod(className, methodName, methodParameterTypes);
+        }
+        JavaStackTraceElement javaStackTraceElement = null;
+        if (data.readBoolean()) {
+            javaStackTraceElement = new JavaStackTraceElement(readString(data), readString(data), readString(data));
+        }
+        Location location = null;
+        if (data.readBoolean()) {
+            long line = data.readLong();
+            Long column = data.readBoolean() ? data.readLong() : null;
+            location = new Location(line, column);
+        }
+        return new SourceReference(uri, javaMethod, javaStackTraceElement, location);
+    }
+
+    private static void writeOptionalString(DataOutputStream data, @Nullable String value) throws IOException {
+        data.writeBoolean(value != null);
+        if (value != null) {
+            writeString(data, value);
+        }
+    }
+
+    @Nullable
+    private static String readOptionalString(DataInputStream data) throws IOException {
+        return data.readBoolean() ? readString(data) : null;
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface OutputConsumer {
+        void accept(OutputStream out) throws IOException;
+    }
+
+    /**
+     * The state of a single step definition.
+     */
+    static final class Entry {
+        private final String id;
+        private final StepDefinitionPattern pattern;
+        private final SourceReference sourceReference;
+        private DurationAccumulator accumulator = new DurationAccumulator();
+        private int matchCount;
+        private long firstUse = NOT_USED;
+
+        Entry(String id, StepDefinitionPattern pattern, SourceReference sourceReference) {
+            this.id = requireNonNull(id);
+            this.pattern = requireNonNull(pattern);
+            this.sourceReference = requireNonNull(sourceReference);
+        }
+
+        void add(long nanos, long use) {
+            if (matchCount++ == 0) {
+                firstUse = use;
+            }
+            accumulator.add(nanos);
+        }
+    }
+}
@@ -8,20 +8,74 @@ import org.jspecify.annotations.Nullable;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.util.Objects.requireNonNull;
 
 public final class UsageReport {
     private final List<StepDefinitionUsage> stepDefinitions;
+    private final @Nullable Integer sampleSize;
+    private final @Nullable UnattributedOverhead unattributedOverhead;
 
-    UsageReport(List<StepDefinitionUsage> stepDefinitions) {
+    UsageReport(List<StepDefinitionUsage> stepDefinitions, @Nullable Integer sampleSize) {
+        this(stepDefinitions, sampleSize, null);
+    }
+
+    UsageReport(List<StepDefinitionUsage> stepDefinitions, @Nullable Integer sampleSize, @Nullable UnattributedOverhead unattributedOverhead) {
         this.stepDefinitions = requireNonNull(stepDefinitions);
+        this.sampleSize = sampleSize;
+        this.unattributedOverhead = unattributedOverhead;
     }
 
     public List<StepDefinitionUsage> getStepDefinitions() {
         return stepDefinitions;
     }
 
+    /**
+     * Visits the step definitions in report order.
+     * <p>
+     * Splits for parallel traversal. Combined with
+     * {@link StepDefinitionUsage#streamMatches()} a serializer can write a
+     * report one row at a time, without creating all step usages at once.
+     */
+    public Spliterator<StepDefinitionUsage> spliterator() {
+        return stepDefinitions.spliterator();
+    }
+
+    /**
+     * A sequential stream of the step definitions in report order. Use
+     * {@link Stream#parallel()} for parallel traversal.
+     *
+     * @see #spliterator()
+     */
+    public Stream<StepDefinitionUsage> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * The maximum number of matches sampled per step definition.
+     * <p>
+     * When present, the matches of each step definition are a uniform random
+     * sample rather than all matches. The statistics are always calculated
+     * from all matches, and {@link StepDefinitionUsage#getMatchCount()} is
+     * the true number of matches.
+     */
+    public Optional<Integer> getSampleSize() {
+        return Optional.ofNullable(sampleSize);
+    }
+
+    /**
+     * The time spent in test cases outside of their steps.
+     * <p>
+     * Only present when enabled with
+     * {@link MessagesToUsageWriter.Builder#unattributedOverhead(boolean)}.
+     */
+    public Optional<UnattributedOverhead> getUnattributedOverhead() {
+        return Optional.ofNullable(unattributedOverhead);
+    }
+
     /**
      * Container for usage-entries of steps
      */
@@ -31,14 +85,26 @@ public final class UsageReport {
         private final SourceReference sourceReference;
         private final @Nullable Statistics duration;
         private final List<StepUsage> matches;
+        private final int matchCount;
+        private final @Nullable DurationAccumulator accumulator;
+        private final @Nullable WarmUp warmUp;
+
+        StepDefinitionUsage(
+                StepDefinitionPattern pattern, SourceReference sourceReference, @Nullable DurationAccumulator accumulator, List<StepUsage> matches, int matchCount
+        ) {
+            this(pattern, sourceReference, accumulator, matches, matchCount, null);
+        }
 
         StepDefinitionUsage(
-                StepDefinitionPattern pattern, SourceReference sourceReference, @Nullable Statistics duration, List<StepUsage> matches
+                StepDefinitionPattern pattern, SourceReference sourceReference, @Nullable DurationAccumulator accumulator, List<StepUsage> matches, int matchCount, @Nullable WarmUp warmUp
         ) {
             this.pattern = requireNonNull(pattern);
             this.sourceReference = requireNonNull(sourceReference);
-            this.duration = duration;
+            this.duration = accumulator == null ? null : accumulator.toStatistics();
             this.matches = requireNonNull(matches);
+            this.matchCount = matchCount;
+            this.accumulator = accumulator;
+            this.warmUp = warmUp;
         }
 
         public StepDefinitionPattern getExpression() {
@@ -49,13 +115,65 @@ public final class UsageReport {
             return duration;
         }
 
+        /**
+         * Steps matched by this step definition.
+         * <p>
+         * Depending on the {@link MessagesToUsageWriter.Requirements} of the
+         * serializer, this may contain only the slowest matches, ordered by
+         * duration, or no matches at all.
+         */
         public List<StepUsage> getMatches() {
             return matches;
         }
 
+        /**
+         * Visits the matches of this step definition, in the same order as
+         * {@link #getMatches()}.
+         * <p>
+         * Matches are read from the internal storage, including matches that
+         * were spilled to disk, and step usages are created as they are
+         * visited. Splits for parallel traversal.
+         */
+        public Spliterator<StepUsage> matchesSpliterator() {
+            return matches.spliterator();
+        }
+
+        /**
+         * A sequential stream of the matches of this step definition.
+         *
+         * @see #matchesSpliterator()
+         */
+        public Stream<StepUsage> streamMatches() {
+            return StreamSupport.stream(matchesSpliterator(), false);
+        }
+
+        /**
+         * The number of steps matched by this step definition. This includes
+         * matches omitted from {@link #getMatches()}.
+         */
+        public int getMatchCount() {
+            return matchCount;
+        }
+
         public SourceReference getSourceReference() {
             return sourceReference;
         }
+
+        /**
+         * Statistics of the warm-up executions and the steady state.
+         * <p>
+         * Only present when enabled with
+         * {@link MessagesToUsageWriter.Builder#warmUpExecutions(int)} and the
+         * step definition was used.
+         */
+        public Optional<WarmUp> getWarmUp() {
+            return Optional.ofNullable(warmUp);
+        }
+
+        @Nullable
+        DurationAccumulator getAccumulator() {
+            return accumulator;
+        }
     }
 
     public static final class Statistics {
@@ -90,6 +208,175 @@ public final class UsageReport {
         }
     }
 
+    /**
+     * Separates the first executions of a step definition from the steady
+     * state.
+     * <p>
+     * The first executions often pay for class loading, JIT compilation and
+     * the creation of caches or connection pools.
+     */
+    public static final class WarmUp {
+        private final int executions;
+        private final Statistics duration;
+        private final @Nullable Statistics steadyState;
+        private final Duration penalty;
+        private final double drift;
+        private final boolean drifting;
+
+        WarmUp(int executions, Statistics duration, @Nullable Statistics steadyState, Duration penalty, double drift, boolean drifting) {
+            this.executions = executions;
+            this.duration = requireNonNull(duration);
+            this.steadyState = steadyState;
+            this.penalty = requireNonNull(penalty);
+            this.drift = drift;
+            this.drifting = drifting;
+        }
+
+        /**
+         * The number of warm-up executions, at most the number requested.
+         */
+        public int getExecutions() {
+            return executions;
+        }
+
+        /**
+         * Statistics of the warm-up executions.
+         */
+        public Statistics getDuration() {
+            return duration;
+        }
+
+        /**
+         * Statistics of the executions after the warm-up, if any.
+         */
+        public Optional<Statistics> getSteadyState() {
+            return Optional.ofNullable(steadyState);
+        }
+
+        /**
+         * Time spent in the warm-up executions in excess of the steady state
+         * mean.
+         */
+        public Duration getPenalty() {
+            return penalty;
+        }
+
+        /**
+         * The change in duration from the first to the last steady state
+         * execution, relative to the steady state mean. E.g. {@code 0.5}
+         * means the last execution took 50% longer than the first.
+         * <p>
+         * Estimated with a least squares fit.
+         */
+        public double getDrift() {
+            return drift;
+        }
+
+        /**
+         * Whether the steady state keeps changing. I.e. the drift is large
+         * and unlikely to be a coincidence.
+         */
+        public boolean isDrifting() {
+            return drifting;
+        }
+    }
+
+    /**
+     * Compares the wall time of test cases with the summed duration of their
+     * steps. The difference is spent between steps, e.g. in the framework,
+     * creating glue, dependency injection or reporting.
+     * <p>
+     * Each list is ordered by unattributed time, largest first.
+     */
+    public static final class UnattributedOverhead {
+        private final List<Overhead> scenarios;
+        private final List<Overhead> features;
+        private final List<Overhead> glueClasses;
+
+        UnattributedOverhead(List<Overhead> scenarios, List<Overhead> features, List<Overhead> glueClasses) {
+            this.scenarios = requireNonNull(scenarios);
+            this.features = requireNonNull(features);
+            this.glueClasses = requireNonNull(glueClasses);
+        }
+
+        public List<Overhead> getScenarios() {
+            return scenarios;
+        }
+
+        public List<Overhead> getFeatures() {
+            return features;
+        }
+
+        /**
+         * The overhead of each test case, divided evenly between the glue
+         * classes of the step definitions it used. Test cases that used no
+         * step definition with a glue class are added to
+         * {@code (no glue class)}, so the glue classes add up to the total of
+         * all test cases.
+         */
+        public List<Overhead> getGlueClasses() {
+            return glueClasses;
+        }
+    }
+
+    public static final class Overhead {
+        private final String name;
+        private final @Nullable String location;
+        private final int testCases;
+        private final Duration wallTime;
+        private final Duration stepTime;
+        private final Duration unattributed;
+
+        Overhead(String name, @Nullable String location, int testCases, Duration wallTime, Duration stepTime, Duration unattributed) {
+            this.name = requireNonNull(name);
+            this.location = location;
+            this.testCases = testCases;
+            this.wallTime = requireNonNull(wallTime);
+            this.stepTime = requireNonNull(stepTime);
+            this.unattributed = requireNonNull(unattributed);
+        }
+
+        /**
+         * The name of the scenario, the uri of the feature or the name of
+         * the glue class.
+         */
+        public String getName() {
+            return name;
+        }
+
+        public Optional<String> getLocation() {
+            return Optional.ofNullable(location);
+        }
+
+        /**
+         * The number of test cases, including retries.
+         */
+        public int getTestCases() {
+            return testCases;
+        }
+
+        /**
+         * Time from the start to the finish of the test cases.
+         */
+        public Duration getWallTime() {
+            return wallTime;
+        }
+
+        /**
+         * The summed duration of the steps of the test cases.
+         */
+        public Duration getStepTime() {
+            return stepTime;
+        }
+
+        /**
+         * Wall time not spent in steps.
+         */
+        public Duration getUnattributed() {
+            return unattributed;
+        }
+    }
+
     public static final class StepUsage {
 
         private final String text;
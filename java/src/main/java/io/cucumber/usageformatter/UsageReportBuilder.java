@@ -1,91 +1,146 @@
 package io.cucumber.usageformatter;
 
-import io.cucumber.messages.Convertor;
 import io.cucumber.messages.types.StepDefinition;
+import io.cucumber.messages.types.TestStep;
 import io.cucumber.messages.types.TestStepFinished;
 import io.cucumber.query.Query;
+import io.cucumber.usageformatter.MessagesToUsageWriter.Requirements;
 import io.cucumber.usageformatter.UsageReport.StepUsage;
+import io.cucumber.usageformatter.UsageReport.UnattributedOverhead;
+import io.cucumber.usageformatter.UsageReport.WarmUp;
 import org.jspecify.annotations.Nullable;
 
-import java.time.Duration;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.groupingBy;
-import static java.util.stream.Collectors.mapping;
-import static java.util.stream.Collectors.toList;
 
 final class UsageReportBuilder {
 
+    private static final int NO_STEP_DEFINITION = -1;
+
     private final Query query;
+    private final Requirements requirements;
+    private final StepUsageStore matches;
+    private final PickleStepTable pickleSteps;
+    private final @Nullable WarmUpAccumulator warmUps;
+    private final @Nullable UnattributedOverhead unattributedOverhead;
 
-    UsageReportBuilder(Query query) {
+    UsageReportBuilder(Query query, Requirements requirements, StepUsageStore matches, @Nullable WarmUpAccumulator warmUps, @Nullable UnattributedOverhead unattributedOverhead) {
         this.query = requireNonNull(query);
+        this.requirements = requireNonNull(requirements);
+        this.matches = requireNonNull(matches);
+        this.pickleSteps = new PickleStepTable(query);
+        this.warmUps = warmUps;
+        this.unattributedOverhead = unattributedOverhead;
     }
 
-    UsageReport build() {
-        Map<Optional<StepDefinition>, List<Optional<StepUsage>>> testStepsFinishedByStepDefinition = query
-                .findAllTestStepFinished()
-                .stream()
-                .collect(groupingBy(this::findUnambiguousStepDefinitionBy, LinkedHashMap::new, mapping(this::createStepUsage, toList())));
+    UsageReport build() throws IOException {
+        // Step definitions are identified by a dense index rather than by
+        // the step definition message. Hashing the message is expensive.
+        List<StepDefinition> stepDefinitions = new ArrayList<>();
+        Map<String, Integer> indexByStepDefinitionId = new HashMap<>();
+        for (StepDefinition stepDefinition : query.findAllStepDefinitions()) {
+            if (indexByStepDefinitionId.putIfAbsent(stepDefinition.getId(), stepDefinitions.size()) == null) {
+                stepDefinitions.add(stepDefinition);
+            }
+        }
+
+        int size = stepDefinitions.size();
+        boolean includeStatistics = requirements.includesStatistics();
+        boolean includeMatches = requirements.includesAllMatches() || requirements.getMaxMatchesPerStepDefinition() > 0;
+        int[] matchCounts = new int[size];
+        DurationAccumulator[] accumulators = new DurationAccumulator[includeStatistics ? size : 0];
+        for (int index = 0; index < accumulators.length; index++) {
+            accumulators[index] = new DurationAccumulator();
+        }
+        // Used step definitions are ordered by first use
+        int[] order = new int[size];
+        int ordered = 0;
+
+        for (TestStepFinished testStepFinished : query.findAllTestStepFinished()) {
+            Optional<TestStep> testStep = query.findTestStepBy(testStepFinished);
+            int index = testStep.isPresent()
+                    ? findUnambiguousStepDefinitionIndex(testStep.get(), indexByStepDefinitionId)
+                    : NO_STEP_DEFINITION;
+            // Filter out steps with without a step definition or with an
+            // ambiguous step definition. These can't be represented.
+            if (index == NO_STEP_DEFINITION) {
+                continue;
+            }
+            if (matchCounts[index]++ == 0) {
+                order[ordered++] = index;
+            }
+            long nanos = Durations.toNanos(testStepFinished.getTestStepResult().getDuration());
+            if (includeStatistics) {
+                accumulators[index].add(nanos);
+            }
+            if (includeMatches) {
+                // Details are looked up once per pickle step
+                int pickleStepIndex = pickleSteps.indexOf(testStepFinished, testStep.get());
+                if (pickleStepIndex != PickleStepTable.NOT_FOUND) {
+                    matches.add(index, nanos, pickleStepIndex);
+                }
+            }
+        }
 
         // Add unused step definitions
-        query.findAllStepDefinitions().stream()
-                .map(Optional::of)
-                .forEach(stepDefinition -> testStepsFinishedByStepDefinition
-                        .computeIfAbsent(stepDefinition, sd -> new ArrayList<>()));
+        for (int index = 0; index < size; index++) {
+            if (matchCounts[index] == 0) {
+                order[ordered++] = index;
+            }
+        }
 
-        List<UsageReport.StepDefinitionUsage> stepDefinitionUsages = testStepsFinishedByStepDefinition.entrySet()
-                .stream()
-                // Filter out steps with without a step definition or with an
-                // ambiguous step definition. These can't be represented.
-                .filter(entry -> entry.getKey().isPresent())
-                .map(entry -> createStepDefinitionUsage(entry.getKey().get(), flatten(entry.getValue())))
-                .collect(toList());
-        return new UsageReport(stepDefinitionUsages);
+        WarmUpAccumulator warmUps = this.warmUps;
+        List<UsageReport.StepDefinitionUsage> stepDefinitionUsages = new ArrayList<>(size);
+        for (int index : order) {
+            StepDefinition stepDefinition = stepDefinitions.get(index);
+            stepDefinitionUsages.add(createStepDefinitionUsage(
+                    stepDefinition,
+                    index,
+                    includeStatistics ? accumulators[index] : null,
+                    matchCounts[index],
+                    warmUps == null ? null : warmUps.toWarmUp(stepDefinition.getId())
+            ));
+        }
+        return new UsageReport(stepDefinitionUsages, matches.isSampling() ? matches.getSampleSize() : null, unattributedOverhead);
     }
 
-    private UsageReport.StepDefinitionUsage createStepDefinitionUsage(StepDefinition stepDefinition, List<StepUsage> matches) {
+    private UsageReport.StepDefinitionUsage createStepDefinitionUsage(
+            StepDefinition stepDefinition, int index, @Nullable DurationAccumulator accumulator, int matchCount, @Nullable WarmUp warmUp
+    ) throws IOException {
         return new UsageReport.StepDefinitionUsage(
                 stepDefinition.getPattern(),
                 stepDefinition.getSourceReference(),
-                createStatistics(matches),
-                matches
+                accumulator,
+                createMatches(index),
+                matchCount,
+                warmUp
         );
     }
 
-    private UsageReport.@Nullable Statistics createStatistics(List<StepUsage> stepUsages) {
-        List<Duration> durations = stepUsages.stream()
-                .map(StepUsage::getDuration)
-                .map(Convertor::toDuration)
-                .collect(toList());
-        return Durations.createStatistics(durations);
-    }
-
-    private Optional<StepUsage> createStepUsage(TestStepFinished testStepFinished) {
-        return query.findTestStepBy(testStepFinished)
-                .flatMap(query::findPickleStepBy)
-                .flatMap(pickleStep -> query
-                        .findPickleBy(testStepFinished)
-                        .map(pickle -> new StepUsage(
-                                        pickleStep.getText(),
-                                        testStepFinished.getTestStepResult().getDuration(),
-                                        pickle.getUri(),
-                                        query.findLocationOf(pickle).orElse(null)
-                                )
-                        ));
-    }
-
-    private Optional<StepDefinition> findUnambiguousStepDefinitionBy(TestStepFinished testStepFinished) {
-        return query.findTestStepBy(testStepFinished)
-                .flatMap(query::findUnambiguousStepDefinitionBy);
+    private List<StepUsage> createMatches(int index) throws IOException {
+        if (requirements.includesAllMatches()) {
+            return matches.getMatches(index, pickleSteps);
+        }
+        int maxMatches = requirements.getMaxMatchesPerStepDefinition();
+        if (maxMatches == 0) {
+            return Collections.emptyList();
+        }
+        return matches.getSlowestMatches(index, maxMatches, pickleSteps);
     }
 
-    private static List<StepUsage> flatten(List<Optional<StepUsage>> value) {
-        return value.stream().filter(Optional::isPresent).map(Optional::get).collect(toList());
+    private static int findUnambiguousStepDefinitionIndex(TestStep testStep, Map<String, Integer> indexByStepDefinitionId) {
+        Optional<List<String>> stepDefinitionIds = testStep.getStepDefinitionIds();
+        if (stepDefinitionIds.isEmpty() || stepDefinitionIds.get().size() != 1) {
+            return NO_STEP_DEFINITION;
+        }
+        Integer index = indexByStepDefinitionId.get(stepDefinitionIds.get().get(0));
+        return index == null ? NO_STEP_DEFINITION : index;
     }
 }
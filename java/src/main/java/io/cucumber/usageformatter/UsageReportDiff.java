@@ -0,0 +1,201 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.usageformatter.UsageReport.Statistics;
+import io.cucumber.usageformatter.UsageReport.StepDefinitionUsage;
+import org.jspecify.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The differences between the usage reports of two test runs.
+ * <p>
+ * Step definitions are joined by their pattern and source reference, because
+ * ids are only unique within a test run. Either report can also be a compact
+ * snapshot recovered with {@link UsageCheckpoint#recover(java.nio.file.Path)}.
+ * <p>
+ * Step definitions are listed in the order of the baseline, followed by added
+ * step definitions in the order of the current report. So unlike sorting by
+ * duration, the order does not change when durations do.
+ */
+public final class UsageReportDiff {
+
+    private final List<StepDefinitionDiff> stepDefinitions;
+
+    private UsageReportDiff(List<StepDefinitionDiff> stepDefinitions) {
+        this.stepDefinitions = requireNonNull(stepDefinitions);
+    }
+
+    /**
+     * Compares two reports in time linear in the number of step definitions.
+     */
+    public static UsageReportDiff compare(UsageReport baseline, UsageReport current) {
+        List<StepDefinitionUsage> currentStepDefinitions = current.getStepDefinitions();
+        Map<String, StepDefinitionUsage> currentByKey = new HashMap<>(capacityFor(currentStepDefinitions.size()));
+        for (StepDefinitionUsage stepDefinition : currentStepDefinitions) {
+            currentByKey.putIfAbsent(UsageReportMerger.keyOf(stepDefinition), stepDefinition);
+        }
+
+        List<StepDefinitionDiff> diffs = new ArrayList<>(currentStepDefinitions.size());
+        Set<String> seen = new HashSet<>(capacityFor(baseline.getStepDefinitions().size()));
+        for (StepDefinitionUsage before : baseline.getStepDefinitions()) {
+            String key = UsageReportMerger.keyOf(before);
+            if (seen.add(key)) {
+                diffs.add(new StepDefinitionDiff(before, currentByKey.get(key)));
+            }
+        }
+        for (StepDefinitionUsage after : currentStepDefinitions) {
+            String key = UsageReportMerger.keyOf(after);
+            if (seen.add(key)) {
+                diffs.add(new StepDefinitionDiff(null, after));
+            }
+        }
+        return new UsageReportDiff(diffs);
+    }
+
+    private static int capacityFor(int size) {
+        return (int) Math.ceil(size / 0.75);
+    }
+
+    /**
+     * All step definitions in either report, including unchanged step
+     * definitions.
+     */
+    public List<StepDefinitionDiff> getStepDefinitions() {
+        return stepDefinitions;
+    }
+
+    /**
+     * Whether any step definition was added, removed, became unused or
+     * changed significantly.
+     */
+    public boolean hasChanges() {
+        for (StepDefinitionDiff stepDefinition : stepDefinitions) {
+            if (stepDefinition.getStatus() != Status.UNCHANGED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public enum Status {
+        /**
+         * Only in the current report.
+         */
+        ADDED,
+        /**
+         * Only in the baseline.
+         */
+        REMOVED,
+        /**
+         * Used in the baseline, but not in the current report.
+         */
+        NEWLY_UNUSED,
+        /**
+         * The mean duration changed by more than the margin of error.
+         */
+        CHANGED,
+        UNCHANGED
+    }
+
+    public static final class StepDefinitionDiff {
+        private final @Nullable StepDefinitionUsage baseline;
+        private final @Nullable StepDefinitionUsage current;
+        private final @Nullable Duration meanDelta;
+        private final @Nullable Duration sumDelta;
+        private final boolean significant;
+        private final Status status;
+
+        private StepDefinitionDiff(@Nullable StepDefinitionUsage baseline, @Nullable StepDefinitionUsage current) {
+            this.baseline = baseline;
+            this.current = current;
+            Statistics before = baseline == null ? null : baseline.getDuration();
+            Statistics after = current == null ? null : current.getDuration();
+            if (before != null && after != null) {
+                long meanDeltaNanos = Durations.toNanos(after.getMean()) - Durations.toNanos(before.getMean());
+                this.meanDelta = Duration.ofNanos(meanDeltaNanos);
+                this.sumDelta = Duration.ofNanos(Durations.toNanos(after.getSum()) - Durations.toNanos(before.getSum()));
+                this.significant = isSignificant(meanDeltaNanos, before, after);
+            } else {
+                this.meanDelta = null;
+                this.sumDelta = null;
+                this.significant = false;
+            }
+            this.status = statusOf(baseline, current, significant);
+        }
+
+        /**
+         * The margins of error of independent means combine as the root of
+         * the sum of squares.
+         */
+        private static boolean isSignificant(long meanDeltaNanos, Statistics before, Statistics after) {
+            double moe95Before = Durations.toNanos(before.getMoe95());
+            double moe95After = Durations.toNanos(after.getMoe95());
+            return Math.abs(meanDeltaNanos) > Math.hypot(moe95Before, moe95After);
+        }
+
+        private static Status statusOf(@Nullable StepDefinitionUsage baseline, @Nullable StepDefinitionUsage current, boolean significant) {
+            if (baseline == null) {
+                return Status.ADDED;
+            }
+            if (current == null) {
+                return Status.REMOVED;
+            }
+            if (baseline.getMatchCount() > 0 && current.getMatchCount() == 0) {
+                return Status.NEWLY_UNUSED;
+            }
+            return significant ? Status.CHANGED : Status.UNCHANGED;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * The step definition in the current report, or in the baseline when
+         * it was removed.
+         */
+        public StepDefinitionUsage getStepDefinition() {
+            StepDefinitionUsage current = this.current;
+            return current != null ? current : requireNonNull(baseline);
+        }
+
+        public Optional<StepDefinitionUsage> getBaseline() {
+            return Optional.ofNullable(baseline);
+        }
+
+        public Optional<StepDefinitionUsage> getCurrent() {
+            return Optional.ofNullable(current);
+        }
+
+        /**
+         * The change in mean duration, when both reports have statistics.
+         */
+        public Optional<Duration> getMeanDelta() {
+            return Optional.ofNullable(meanDelta);
+        }
+
+        /**
+         * The change in total duration, when both reports have statistics.
+         */
+        public Optional<Duration> getSumDelta() {
+            return Optional.ofNullable(sumDelta);
+        }
+
+        /**
+         * Whether the mean changed by more than the combined margin of error
+         * of both reports.
+         */
+        public boolean isSignificant() {
+            return significant;
+        }
+    }
+}
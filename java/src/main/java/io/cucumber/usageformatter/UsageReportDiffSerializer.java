@@ -0,0 +1,92 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.usageformatter.UsageReport.Statistics;
+import io.cucumber.usageformatter.UsageReport.StepDefinitionUsage;
+import io.cucumber.usageformatter.UsageReportDiff.Status;
+import io.cucumber.usageformatter.UsageReportDiff.StepDefinitionDiff;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.Function;
+
+import static io.cucumber.usageformatter.Durations.formatDuration;
+import static java.lang.System.lineSeparator;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Shows how the usage report differs from a baseline, see
+ * {@link UsageReportDiff}.
+ * <p>
+ * Only step definitions that were added, removed, became unused or changed
+ * significantly are shown.
+ */
+public final class UsageReportDiffSerializer implements MessagesToUsageWriter.Serializer {
+    private final SourceReferenceFormatter sourceReferenceFormatter = new SourceReferenceFormatter(Function.identity());
+    private final String[] headers = {"Status", "Expression", "Mean before", "Mean after", "Δ Mean", "Δ Sum", "Location"};
+    private final boolean[] leftAlignColumn = {true, true, false, false, false, false, true};
+    private final UsageReport baseline;
+
+    public UsageReportDiffSerializer(UsageReport baseline) {
+        this.baseline = requireNonNull(baseline);
+    }
+
+    @Override
+    public void writeValue(Writer writer, UsageReport value) throws IOException {
+        UsageReportDiff diff = UsageReportDiff.compare(baseline, value);
+        Map<Status, Integer> counts = new EnumMap<>(Status.class);
+        Table table = new Table(headers);
+        for (StepDefinitionDiff stepDefinition : diff.getStepDefinitions()) {
+            Status status = stepDefinition.getStatus();
+            counts.merge(status, 1, Integer::sum);
+            if (status == Status.UNCHANGED) {
+                continue;
+            }
+            StepDefinitionUsage usage = stepDefinition.getStepDefinition();
+            table.add(
+                    status.name().toLowerCase(Locale.ROOT).replace('_', ' '),
+                    usage.getExpression().getSource(),
+                    formatMean(stepDefinition.getBaseline().orElse(null)),
+                    formatMean(stepDefinition.getCurrent().orElse(null)),
+                    stepDefinition.getMeanDelta().map(UsageReportDiffSerializer::formatDelta).orElse(""),
+                    stepDefinition.getSumDelta().map(UsageReportDiffSerializer::formatDelta).orElse(""),
+                    sourceReferenceFormatter.format(usage.getSourceReference()).orElse("")
+            );
+        }
+
+        StringJoiner joiner = new StringJoiner(lineSeparator(), lineSeparator(), "");
+        joiner.add(String.format(Locale.ROOT, "%d added, %d removed, %d newly unused, %d changed, %d unchanged",
+                counts.getOrDefault(Status.ADDED, 0),
+                counts.getOrDefault(Status.REMOVED, 0),
+                counts.getOrDefault(Status.NEWLY_UNUSED, 0),
+                counts.getOrDefault(Status.CHANGED, 0),
+                counts.getOrDefault(Status.UNCHANGED, 0)));
+        if (table.getRows().size() > 1) {
+            joiner.add(TableFormatter.format(table, leftAlignColumn));
+        }
+        writer.append(joiner.toString());
+    }
+
+    @Override
+    public MessagesToUsageWriter.Requirements requirements() {
+        return MessagesToUsageWriter.Requirements.statistics();
+    }
+
+    private static String formatMean(@Nullable StepDefinitionUsage stepDefinition) {
+        Statistics statistics = stepDefinition == null ? null : stepDefinition.getDuration();
+        if (statistics == null) {
+            return "";
+        }
+        return formatDuration(statistics.getMean());
+    }
+
+    private static String formatDelta(Duration delta) {
+        String formatted = formatDuration(delta);
+        return delta.isNegative() ? formatted : "+" + formatted;
+    }
+}
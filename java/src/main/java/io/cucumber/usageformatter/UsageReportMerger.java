@@ -0,0 +1,143 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.types.SourceReference;
+import io.cucumber.messages.types.StepDefinitionPattern;
+import io.cucumber.usageformatter.UsageReport.StepDefinitionUsage;
+import io.cucumber.usageformatter.UsageReport.StepUsage;
+import io.cucumber.usageformatter.cli.UsageReportMergers;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Combines the usage reports of several test runs into one.
+ * <p>
+ * Step definitions are identified by their pattern and source reference,
+ * because ids are only unique within a test run. Statistics are merged
+ * exactly. Matches are copied, so reports can be merged after the writer that
+ * created them was closed.
+ * <p>
+ * Only the slowest matches required by
+ * {@link MessagesToUsageWriter.Requirements} are kept, slowest first. All
+ * matches of all reports would not fit in memory, so requiring all matches is
+ * not supported.
+ * <p>
+ * Not part of the api, the command line gets access through
+ * {@link UsageReportMergers}.
+ */
+final class UsageReportMerger implements UsageReportMergers.Merger {
+
+    private static final SourceReferenceFormatter sourceReferenceFormatter = new SourceReferenceFormatter(Function.identity());
+    private static final Comparator<StepUsage> slowestFirst = Comparator
+            .comparingLong((StepUsage stepUsage) -> Durations.toNanos(stepUsage.getDuration()))
+            .reversed();
+
+    static {
+        UsageReportMergers.register(UsageReportMerger::new);
+    }
+
+    private final MessagesToUsageWriter.Requirements requirements;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    UsageReportMerger(MessagesToUsageWriter.Requirements requirements) {
+        this.requirements = requireNonNull(requirements);
+        if (requirements.includesAllMatches()) {
+            throw new IllegalArgumentException("Only a limited number of matches can be merged");
+        }
+    }
+
+    static String keyOf(StepDefinitionUsage stepDefinition) {
+        StepDefinitionPattern pattern = stepDefinition.getExpression();
+        return pattern.getType() + ":" + pattern.getSource() + "@"
+                + sourceReferenceFormatter.format(stepDefinition.getSourceReference()).orElse("");
+    }
+
+    @Override
+    public synchronized void add(UsageReport report) {
+        for (StepDefinitionUsage stepDefinition : report.getStepDefinitions()) {
+            Entry entry = entries.computeIfAbsent(keyOf(stepDefinition), key -> new Entry(stepDefinition));
+            entry.add(stepDefinition, requirements);
+        }
+    }
+
+    @Override
+    public synchronized UsageReport toReport() {
+        List<StepDefinitionUsage> stepDefinitions = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            stepDefinitions.add(new StepDefinitionUsage(
+                    entry.pattern,
+                    entry.sourceReference,
+                    entry.accumulator,
+                    new ArrayList<>(entry.matches),
+                    entry.matchCount
+            ));
+        }
+        return new UsageReport(stepDefinitions, null);
+    }
+
+    private static final class Entry {
+        private final StepDefinitionPattern pattern;
+        private final SourceReference sourceReference;
+        private List<StepUsage> matches = new ArrayList<>();
+        private @Nullable DurationAccumulator accumulator;
+        private int matchCount;
+
+        private Entry(StepDefinitionUsage stepDefinition) {
+            this.pattern = requireNonNull(stepDefinition.getExpression());
+            this.sourceReference = requireNonNull(stepDefinition.getSourceReference());
+        }
+
+        private void add(StepDefinitionUsage stepDefinition, MessagesToUsageWriter.Requirements requirements) {
+            matchCount += stepDefinition.getMatchCount();
+            DurationAccumulator other = stepDefinition.getAccumulator();
+            if (other != null) {
+                DurationAccumulator accumulator = this.accumulator;
+                if (accumulator == null) {
+                    accumulator = new DurationAccumulator();
+                    this.accumulator = accumulator;
+                }
+                accumulator.merge(other);
+            }
+            int maxMatches = requirements.getMaxMatchesPerStepDefinition();
+            if (maxMatches > 0) {
+                matches = mergeSlowestFirst(matches, slowest(stepDefinition.getMatches(), maxMatches), maxMatches);
+            }
+        }
+
+        private static List<StepUsage> slowest(List<StepUsage> matches, int n) {
+            if (matches instanceof StepUsageList stepUsages) {
+                return stepUsages.slowest(n);
+            }
+            return matches.stream()
+                    .sorted(slowestFirst)
+                    .limit(n)
+                    .collect(toList());
+        }
+
+        /**
+         * Merges two lists that are sorted slowest first, keeping at most
+         * {@code n}. For equal durations, earlier reports go first.
+         */
+        private static List<StepUsage> mergeSlowestFirst(List<StepUsage> a, List<StepUsage> b, int n) {
+            List<StepUsage> merged = new ArrayList<>(Math.min(n, a.size() + b.size()));
+            int i = 0;
+            int j = 0;
+            while (merged.size() < n && (i < a.size() || j < b.size())) {
+                if (j == b.size() || (i < a.size() && slowestFirst.compare(a.get(i), b.get(j)) <= 0)) {
+                    merged.add(a.get(i++));
+                } else {
+                    merged.add(b.get(j++));
+                }
+            }
+            return merged;
+        }
+    }
+}
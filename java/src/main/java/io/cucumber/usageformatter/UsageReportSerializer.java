@@ -1,7 +1,6 @@
 package io.cucumber.usageformatter;
 
 import io.cucumber.messages.DurationComparator;
-import io.cucumber.messages.types.Duration;
 import io.cucumber.messages.types.Location;
 import io.cucumber.usageformatter.UsageReport.Statistics;
 import io.cucumber.usageformatter.UsageReport.StepDefinitionUsage;
@@ -9,18 +8,21 @@ import io.cucumber.usageformatter.UsageReport.StepUsage;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.function.Function;
 
-import static io.cucumber.usageformatter.Durations.toBigDecimalSeconds;
+import static io.cucumber.usageformatter.Durations.formatDuration;
 import static io.cucumber.usageformatter.UsageReportSerializer.PlainTextFeature.INCLUDE_STEPS;
-import static java.math.RoundingMode.HALF_EVEN;
+import static java.lang.System.lineSeparator;
 import static java.util.Comparator.comparing;
 import static java.util.Comparator.nullsFirst;
 import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
 
 public final class UsageReportSerializer implements MessagesToUsageWriter.Serializer {
 
@@ -46,89 +48,117 @@ public final class UsageReportSerializer implements MessagesToUsageWriter.Serial
 
     @Override
     public void writeValue(Writer writer, UsageReport value) throws IOException {
-        writer.append(format(value));
-    }
-
-    private String format(UsageReport usageReport) {
-        List<StepDefinitionUsage> stepDefinitions = usageReport.getStepDefinitions();
+        List<StepDefinitionUsage> stepDefinitions = value.getStepDefinitions();
         if (stepDefinitions.isEmpty()) {
-            return "";
+            return;
+        }
+        List<StepDefinitionUsage> sorted = stepDefinitions.stream()
+                .sorted(byMeanDurationDescending())
+                .collect(toList());
+
+        // The steps of each step definition are sorted once, and read by
+        // both passes below
+        List<List<StepUsage>> slowestSteps = new ArrayList<>(sorted.size());
+        for (StepDefinitionUsage stepDefinitionUsage : sorted) {
+            slowestSteps.add(features.contains(INCLUDE_STEPS) ? slowest(stepDefinitionUsage.getMatches()) : List.of());
+        }
+
+        // The rows are created twice, once to measure the columns and once
+        // to write them. So the table doesn't have to be held in memory.
+        int[] longestCellLengthInColumn = new int[headers.length];
+        TableFormatter.measureRow(longestCellLengthInColumn, headers);
+        boolean sampled = value.getSampleSize().isPresent();
+        for (int i = 0; i < sorted.size(); i++) {
+            createRows(sorted.get(i), slowestSteps.get(i), sampled, row -> TableFormatter.measureRow(longestCellLengthInColumn, row));
+        }
+
+        writer.append(lineSeparator());
+        RowConsumer appendRow = row -> TableFormatter.appendRow(writer, row, longestCellLengthInColumn, leftAlignColumn);
+        appendRow.accept(headers);
+        for (int i = 0; i < sorted.size(); i++) {
+            createRows(sorted.get(i), slowestSteps.get(i), sampled, appendRow);
         }
-        Table table = createTable(stepDefinitions);
-        return TableFormatter.format(table, leftAlignColumn);
     }
 
-    private Table createTable(List<StepDefinitionUsage> stepDefinitions) {
-        return stepDefinitions
-                .stream()
-                .sorted(byMeanDurationDescending())
-                .map(this::createRows)
-                .reduce(new Table(headers), Table::addTo);
+    @Override
+    public MessagesToUsageWriter.Requirements requirements() {
+        if (!features.contains(INCLUDE_STEPS)) {
+            return MessagesToUsageWriter.Requirements.statistics();
+        }
+        return MessagesToUsageWriter.Requirements.topMatches(maxStepsPerStepDefinition);
     }
 
-    private Table createRows(StepDefinitionUsage stepDefinitionUsage) {
-        Table table = new Table();
+    private void createRows(StepDefinitionUsage stepDefinitionUsage, List<StepUsage> slowestSteps, boolean sampled, RowConsumer rows) throws IOException {
         Statistics duration = stepDefinitionUsage.getDuration();
 
         // Add step definition row
-        table.add(
+        rows.accept(new String[]{
                 stepDefinitionUsage.getExpression().getSource(),
                 duration == null ? "" : formatDuration(duration.getSum()),
                 duration == null ? "" : formatDuration(duration.getMean()),
                 duration == null ? "" : "±",
                 duration == null ? "" : formatDuration(duration.getMoe95()),
                 sourceReferenceFormatter.format(stepDefinitionUsage.getSourceReference()).orElse("")
-        );
+        });
 
         if (!features.contains(INCLUDE_STEPS)) {
-            return table;
+            return;
         }
 
         // Add rows for steps, if any
-        List<StepUsage> steps = stepDefinitionUsage.getMatches();
-        if (steps.isEmpty()) {
-            table.add(
+        int matchCount = stepDefinitionUsage.getMatchCount();
+        if (matchCount == 0) {
+            rows.accept(new String[]{
                     "  UNUSED",
                     "",
                     "",
                     "",
                     "",
                     ""
-            );
-            return table;
+            });
+            return;
         }
 
-        boolean includeAllSteps = maxStepsPerStepDefinition == INCLUDE_ALL_STEPS;
-        int includeToIndex = includeAllSteps ? steps.size() : Math.min(maxStepsPerStepDefinition, steps.size());
+        int includeToIndex = slowestSteps.size();
+        for (StepUsage stepUsage : slowestSteps) {
+            rows.accept(new String[]{
+                    "  " + stepUsage.getText(),
+                    formatDuration(stepUsage.getDuration()),
+                    "",
+                    "",
+                    "",
+                    uriFormatter.apply(stepUsage.getUri()) + stepUsage.getLocation()
+                            .map(Location::getLine)
+                            .map(line -> ":" + line)
+                            .orElse("")
+            });
+        }
 
-        steps.stream()
-                .sorted(comparing(StepUsage::getDuration, durationComparator).reversed())
-                .limit(includeToIndex)
-                .forEach(stepUsage ->
-                        table.add(
-                                "  " + stepUsage.getText(),
-                                formatDuration(stepUsage.getDuration()),
-                                "",
-                                "",
-                                "",
-                                uriFormatter.apply(stepUsage.getUri()) + stepUsage.getLocation()
-                                        .map(Location::getLine)
-                                        .map(line -> ":" + line)
-                                        .orElse("")
-                        ));
-
-        if (steps.size() > includeToIndex) {
-            table.add(
-                    "  " + (steps.size() - includeToIndex) + " more",
+        if (matchCount > includeToIndex) {
+            rows.accept(new String[]{
+                    sampled
+                            ? String.format(Locale.ROOT, "  showing %,d of %,d", includeToIndex, matchCount)
+                            : "  " + (matchCount - includeToIndex) + " more",
                     "",
                     "",
                     "",
                     "",
                     ""
-            );
+            });
         }
+    }
 
-        return table;
+    private List<StepUsage> slowest(List<StepUsage> steps) {
+        boolean includeAllSteps = maxStepsPerStepDefinition == INCLUDE_ALL_STEPS;
+        int n = includeAllSteps ? steps.size() : Math.min(maxStepsPerStepDefinition, steps.size());
+        if (steps instanceof StepUsageList stepUsages) {
+            // Sorted by primitive duration, step usages are created lazily
+            return stepUsages.slowest(n);
+        }
+        return steps.stream()
+                .sorted(comparing(StepUsage::getDuration, durationComparator).reversed())
+                .limit(n)
+                .collect(toList());
     }
 
     private static Comparator<StepDefinitionUsage> byMeanDurationDescending() {
@@ -136,8 +166,9 @@ public final class UsageReportSerializer implements MessagesToUsageWriter.Serial
         return comparing(StepDefinitionUsage::getDuration, nullsFirst(compareMean)).reversed();
     }
 
-    private String formatDuration(Duration duration) {
-        return toBigDecimalSeconds(duration).setScale(3, HALF_EVEN).toPlainString() + "s";
+    @FunctionalInterface
+    private interface RowConsumer {
+        void accept(String[] row) throws IOException;
     }
 
 
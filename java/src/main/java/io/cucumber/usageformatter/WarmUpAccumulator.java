@@ -0,0 +1,155 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.Convertor;
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.messages.types.TestStep;
+import io.cucumber.messages.types.TestStepFinished;
+import io.cucumber.query.Query;
+import io.cucumber.usageformatter.UsageReport.Statistics;
+import io.cucumber.usageformatter.UsageReport.WarmUp;
+import org.jspecify.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Separates the warm-up executions of each step definition from the steady
+ * state while messages are written.
+ * <p>
+ * Executions are ordered by the time they were received, which is the time
+ * they finished. The first executions are the warm-up, the remainder is the
+ * steady state. A steady state that keeps getting slower or faster over the
+ * run is drifting.
+ * <p>
+ * Only running sums are kept, so the memory used does not depend on the
+ * number of executions.
+ */
+final class WarmUpAccumulator {
+
+    // Relative change in duration between the first and last execution
+    static final double DRIFT_THRESHOLD = 0.25;
+    // Two-sided, 95% confidence the trend is not a coincidence
+    private static final double MIN_TREND_SIGNIFICANCE = 2.0;
+    private static final int MIN_DRIFT_EXECUTIONS = 3;
+
+    private final int warmUpExecutions;
+    private final Map<String, Executions> executionsByStepDefinitionId = new HashMap<>();
+
+    WarmUpAccumulator(int warmUpExecutions) {
+        this.warmUpExecutions = warmUpExecutions;
+    }
+
+    void update(Envelope envelope, Query query) {
+        Optional<TestStepFinished> testStepFinished = envelope.getTestStepFinished();
+        if (testStepFinished.isEmpty()) {
+            return;
+        }
+        long nanos = Durations.toNanos(testStepFinished.get().getTestStepResult().getDuration());
+        // Steps with an ambiguous step definition can't be represented
+        query.findTestStepBy(testStepFinished.get())
+                .flatMap(TestStep::getStepDefinitionIds)
+                .filter(stepDefinitionIds -> stepDefinitionIds.size() == 1)
+                .ifPresent(stepDefinitionIds -> add(stepDefinitionIds.get(0), nanos));
+    }
+
+    void add(String stepDefinitionId, long durationNanos) {
+        executionsByStepDefinitionId
+                .computeIfAbsent(stepDefinitionId, id -> new Executions())
+                .add(durationNanos, warmUpExecutions);
+    }
+
+    @Nullable
+    WarmUp toWarmUp(String stepDefinitionId) {
+        Executions executions = executionsByStepDefinitionId.get(stepDefinitionId);
+        return executions == null ? null : executions.toWarmUp();
+    }
+
+    private static final class Executions {
+        private final DurationAccumulator warmUp = new DurationAccumulator();
+        private final DurationAccumulator steadyState = new DurationAccumulator();
+        private final Trend trend = new Trend();
+
+        private void add(long durationNanos, int warmUpExecutions) {
+            if (warmUp.getCount() < warmUpExecutions) {
+                warmUp.add(durationNanos);
+            } else {
+                trend.add(steadyState.getCount(), durationNanos);
+                steadyState.add(durationNanos);
+            }
+        }
+
+        private WarmUp toWarmUp() {
+            Statistics steadyStateStatistics = steadyState.toStatistics();
+            long penaltyNanos = 0;
+            if (steadyStateStatistics != null) {
+                long steadyStateMeanNanos = Durations.toNanos(steadyStateStatistics.getMean());
+                penaltyNanos = Math.max(0, warmUp.getSumNanos() - warmUp.getCount() * steadyStateMeanNanos);
+            }
+            return new WarmUp(
+                    (int) warmUp.getCount(),
+                    requireNonNull(warmUp.toStatistics()),
+                    steadyStateStatistics,
+                    Convertor.toMessage(Duration.ofNanos(penaltyNanos)),
+                    trend.drift(),
+                    trend.isDrifting()
+            );
+        }
+    }
+
+    /**
+     * Least squares fit of the duration against the execution index.
+     */
+    private static final class Trend {
+        private long count;
+        private double sumX;
+        private double sumXX;
+        private double sumY;
+        private double sumYY;
+        private double sumXY;
+
+        private void add(long x, long y) {
+            count++;
+            sumX += x;
+            sumXX += (double) x * x;
+            sumY += y;
+            sumYY += (double) y * y;
+            sumXY += (double) x * y;
+        }
+
+        private double slope() {
+            double sxx = sumXX - sumX * sumX / count;
+            double sxy = sumXY - sumX * sumY / count;
+            return sxx == 0 ? 0 : sxy / sxx;
+        }
+
+        /**
+         * The change in duration between the first and last execution,
+         * relative to the mean duration.
+         */
+        private double drift() {
+            if (count < MIN_DRIFT_EXECUTIONS || sumY == 0) {
+                return 0;
+            }
+            double mean = sumY / count;
+            return slope() * (count - 1) / mean;
+        }
+
+        private boolean isDrifting() {
+            double drift = drift();
+            if (Math.abs(drift) < DRIFT_THRESHOLD) {
+                return false;
+            }
+            double sxx = sumXX - sumX * sumX / count;
+            double sxy = sumXY - sumX * sumY / count;
+            double syy = sumYY - sumY * sumY / count;
+            double slope = slope();
+            double residual = Math.max(0, syy - slope * sxy);
+            double standardError = Math.sqrt(residual / (count - 2) / sxx);
+            return standardError == 0 || Math.abs(slope / standardError) >= MIN_TREND_SIGNIFICANCE;
+        }
+    }
+}
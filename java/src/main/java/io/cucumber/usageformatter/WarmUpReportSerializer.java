@@ -0,0 +1,102 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.DurationComparator;
+import io.cucumber.messages.types.Duration;
+import io.cucumber.usageformatter.UsageReport.Statistics;
+import io.cucumber.usageformatter.UsageReport.StepDefinitionUsage;
+import io.cucumber.usageformatter.UsageReport.WarmUp;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static io.cucumber.usageformatter.Durations.formatDuration;
+import static java.util.Comparator.comparing;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Shows the cost of warming up each step definition, most expensive first.
+ * <p>
+ * Requires the writer to collect warm-up statistics with
+ * {@link MessagesToUsageWriter.Builder#warmUpExecutions(int)}. Step
+ * definitions whose steady state is drifting are marked.
+ */
+public final class WarmUpReportSerializer implements MessagesToUsageWriter.Serializer {
+    private final SourceReferenceFormatter sourceReferenceFormatter;
+    private final String[] headers = {"Expression", "Warm-up", "Mean", "Steady state", "±", "Error", "Penalty", "Drift", "Location"};
+    private final boolean[] leftAlignColumn = {true, false, false, false, true, false, false, true, true};
+
+    private WarmUpReportSerializer(Function<String, String> uriFormatter) {
+        this.sourceReferenceFormatter = new SourceReferenceFormatter(requireNonNull(uriFormatter));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public void writeValue(Writer writer, UsageReport value) throws IOException {
+        List<StepDefinitionUsage> warmedUp = value.getStepDefinitions().stream()
+                .filter(stepDefinitionUsage -> stepDefinitionUsage.getWarmUp().isPresent())
+                .sorted(byPenaltyDescending())
+                .collect(toList());
+        if (warmedUp.isEmpty()) {
+            return;
+        }
+
+        Table table = new Table(headers);
+        for (StepDefinitionUsage stepDefinitionUsage : warmedUp) {
+            WarmUp warmUp = stepDefinitionUsage.getWarmUp().orElseThrow();
+            Optional<Statistics> steadyState = warmUp.getSteadyState();
+            table.add(
+                    stepDefinitionUsage.getExpression().getSource(),
+                    warmUp.getExecutions() + "x",
+                    formatDuration(warmUp.getDuration().getMean()),
+                    steadyState.map(statistics -> formatDuration(statistics.getMean())).orElse(""),
+                    steadyState.isPresent() ? "±" : "",
+                    steadyState.map(statistics -> formatDuration(statistics.getMoe95())).orElse(""),
+                    formatDuration(warmUp.getPenalty()),
+                    formatDrift(warmUp),
+                    sourceReferenceFormatter.format(stepDefinitionUsage.getSourceReference()).orElse("")
+            );
+        }
+        writer.append(TableFormatter.format(table, leftAlignColumn));
+    }
+
+    @Override
+    public MessagesToUsageWriter.Requirements requirements() {
+        return MessagesToUsageWriter.Requirements.statistics();
+    }
+
+    private static Comparator<StepDefinitionUsage> byPenaltyDescending() {
+        Comparator<Duration> comparePenalty = new DurationComparator();
+        return comparing((StepDefinitionUsage stepDefinitionUsage) -> stepDefinitionUsage.getWarmUp().orElseThrow().getPenalty(), comparePenalty)
+                .reversed();
+    }
+
+    private static String formatDrift(WarmUp warmUp) {
+        String drift = String.format(Locale.ROOT, "%+.0f%%", warmUp.getDrift() * 100);
+        return warmUp.isDrifting() ? drift + " drifting" : drift;
+    }
+
+    public static final class Builder {
+        private Function<String, String> uriFormatter = Function.identity();
+
+        /**
+         * Removes a given prefix from all URI locations.
+         */
+        public Builder removeUriPrefix(String prefix) {
+            this.uriFormatter = SourceReferenceFormatter.removeUriPrefix(prefix);
+            return this;
+        }
+
+        public WarmUpReportSerializer build() {
+            return new WarmUpReportSerializer(uriFormatter);
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package io.cucumber.usageformatter.cli;
+
+import io.cucumber.messages.NdjsonToMessageReader;
+import io.cucumber.messages.ndjson.Json;
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.usageformatter.BudgetReportSerializer;
+import io.cucumber.usageformatter.DurationBudgets;
+import io.cucumber.usageformatter.HtmlReportSerializer;
+import io.cucumber.usageformatter.JsonReportSerializer;
+import io.cucumber.usageformatter.MessagesToUsageWriter;
+import io.cucumber.usageformatter.UnusedReportSerializer;
+import io.cucumber.usageformatter.UsageReport;
+import io.cucumber.usageformatter.UsageReportSerializer;
+import io.cucumber.usageformatter.cli.UsageReportMergers.Merger;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes usage reports for many message files at once.
+ * <p>
+ * Each {@code .ndjson} file, or each {@code .ndjson} file in a directory, is
+ * processed on a bounded pool of threads. A report is written for every file
+ * and optionally a combined report for all files. Progress and throughput are
+ * written to standard error.
+ * <p>
+ * Reading messages requires an implementation of {@link Json} on the class
+ * path, e.g. Jackson. The {@code cli} profile builds an executable jar that
+ * includes one.
+ */
+public final class BatchUsageFormatter {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILURE = 1;
+    static final int EXIT_USAGE = 2;
+    static final int EXIT_BUDGET_EXCEEDED = 3;
+
+    // The combined report keeps only the slowest matches, all matches of all files would not fit in memory
+    private static final int DEFAULT_COMBINED_MAX_STEPS = 10;
+
+    private static final String USAGE = """
+            Usage: usage-formatter [options] <file or directory>...
+
+            Options:
+              --format <format>            usage, usage-with-steps, unused, json or html (default: usage)
+              --max-steps <n>              steps shown per step definition with usage-with-steps and html (default: all,
+                                           or 10 in the combined report)
+              --remove-uri-prefix <prefix> removes a prefix from uris in text and html reports
+              --output-dir <directory>     where reports are written (default: next to each file)
+              --combined <file>            also write a combined report for all files
+              --budgets <file>             fail when the combined statistics exceed these step definition budgets
+              --threads <n>                number of files processed concurrently (default: number of processors)
+              --quiet                      do not write progress
+              --help                       show this message
+            """;
+
+    private final Options options;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final NdjsonToMessageReader.Deserializer deserializer;
+
+    private BatchUsageFormatter(Options options, PrintStream out, PrintStream err, NdjsonToMessageReader.Deserializer deserializer) {
+        this.options = requireNonNull(options);
+        this.out = requireNonNull(out);
+        this.err = requireNonNull(err);
+        this.deserializer = requireNonNull(deserializer);
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.print(USAGE);
+            return EXIT_USAGE;
+        }
+        if (options.help) {
+            out.print(USAGE);
+            return EXIT_OK;
+        }
+        Optional<Json> json = Json.instance();
+        if (json.isEmpty()) {
+            err.println("No JSON implementation was found to read messages with");
+            return EXIT_FAILURE;
+        }
+        NdjsonToMessageReader.Deserializer deserializer = json.get().deserializer(Envelope.class)::readValue;
+        try {
+            return new BatchUsageFormatter(options, out, err, deserializer).run();
+        } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+            err.println(e.getMessage());
+            return EXIT_FAILURE;
+        }
+    }
+
+    private int run() throws IOException {
+        List<Input> inputs = findInputs(options.paths);
+        if (inputs.isEmpty()) {
+            err.println("No .ndjson files were found");
+            return EXIT_USAGE;
+        }
+        MessagesToUsageWriter.Serializer serializer = options.format.createSerializer(options);
+        Path budgetsPath = options.budgets;
+        DurationBudgets budgets = budgetsPath == null ? null : DurationBudgets.read(budgetsPath);
+        boolean combine = options.combined != null || budgets != null;
+        MessagesToUsageWriter.Requirements combinedRequirements = options.format.combinedRequirements(options);
+
+        long start = System.nanoTime();
+        long totalBytes = 0;
+        int failures = 0;
+        // Indexed by input, so reports are combined in a stable order
+        @Nullable UsageReport[] reports = new UsageReport[inputs.size()];
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(options.threads, inputs.size()));
+        try {
+            CompletionService<Result> completion = new ExecutorCompletionService<>(executor);
+            for (int i = 0; i < inputs.size(); i++) {
+                Input input = inputs.get(i);
+                int index = i;
+                completion.submit(() -> process(index, input, serializer, combine ? combinedRequirements : null));
+            }
+            for (int completed = 1; completed <= inputs.size(); completed++) {
+                try {
+                    Result result = completion.take().get();
+                    totalBytes += result.bytes;
+                    reports[result.index] = result.report;
+                    progress("[%d/%d] %s -> %s (%s in %.2fs)", completed, inputs.size(), result.input.file,
+                            result.output, formatBytes(result.bytes), seconds(result.nanos));
+                } catch (ExecutionException e) {
+                    failures++;
+                    Throwable cause = e.getCause();
+                    err.printf(Locale.ROOT, "[%d/%d] %s%n", completed, inputs.size(), cause == null ? e : cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            err.println("Interrupted");
+            return EXIT_FAILURE;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double elapsed = seconds(System.nanoTime() - start);
+        progress("Processed %d file(s), %s in %.2fs (%s/s)", inputs.size() - failures, formatBytes(totalBytes),
+                elapsed, formatBytes((long) (totalBytes / Math.max(elapsed, 1e-9))));
+        // A combined report of only some files would be misleading
+        if (failures > 0) {
+            err.printf(Locale.ROOT, "Failed to process %d file(s)%n", failures);
+            return EXIT_FAILURE;
+        }
+        if (!combine) {
+            return EXIT_OK;
+        }
+        Merger combined = UsageReportMergers.create(combinedRequirements);
+        for (@Nullable UsageReport report : reports) {
+            combined.add(requireNonNull(report));
+        }
+        UsageReport combinedReport = combined.toReport();
+        Path combinedPath = options.combined;
+        if (combinedPath != null) {
+            writeReport(combinedPath, serializer, combinedReport);
+            progress("Combined report -> %s", combinedPath);
+        }
+        if (budgets != null) {
+            return checkBudgets(budgets, combinedReport);
+        }
+        return EXIT_OK;
+    }
+
+    private int checkBudgets(DurationBudgets budgets, UsageReport report) throws IOException {
+        Writer writer = new OutputStreamWriter(out, UTF_8);
+        new BudgetReportSerializer(budgets).writeValue(writer, report);
+        writer.flush();
+        if (!budgets.evaluate(report).isEmpty()) {
+            return EXIT_BUDGET_EXCEEDED;
+        }
+        progress("All step definitions are within budget");
+        return EXIT_OK;
+    }
+
+    /**
+     * Writes the report of a file to a temporary file first, so that a file
+     * that fails halfway does not leave a partial report behind.
+     */
+    private Result process(int index, Input input, MessagesToUsageWriter.Serializer serializer,
+                           MessagesToUsageWriter.@Nullable Requirements combinedRequirements) throws IOException {
+        long start = System.nanoTime();
+        Path output = outputOf(input);
+        createParentDirectories(output);
+        MessagesToUsageWriter.Builder builder = MessagesToUsageWriter.builder(serializer);
+        Merger detached = null;
+        if (combinedRequirements != null) {
+            detached = UsageReportMergers.create(combinedRequirements);
+            builder.target(mergeInto(detached, combinedRequirements), OutputStream.nullOutputStream());
+        }
+        Path temp = Files.createTempFile(requireNonNull(output.toAbsolutePath().getParent()), output.getFileName() + "-", ".tmp");
+        try {
+            try (InputStream in = Files.newInputStream(input.file);
+                 NdjsonToMessageReader reader = new NdjsonToMessageReader(in, deserializer);
+                 OutputStream out = Files.newOutputStream(temp);
+                 MessagesToUsageWriter writer = builder.build(out)) {
+                Iterator<Envelope> envelopes = reader.lines().iterator();
+                while (envelopes.hasNext()) {
+                    writer.write(envelopes.next());
+                }
+            }
+            Files.move(temp, output, REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        UsageReport report = detached == null ? null : detached.toReport();
+        return new Result(index, input, output, report, Files.size(input.file), System.nanoTime() - start);
+    }
+
+    private static MessagesToUsageWriter.Serializer mergeInto(Merger merger, MessagesToUsageWriter.Requirements requirements) {
+        return new MessagesToUsageWriter.Serializer() {
+            @Override
+            public void writeValue(Writer writer, UsageReport value) {
+                merger.add(value);
+            }
+
+            @Override
+            public MessagesToUsageWriter.Requirements requirements() {
+                return requirements;
+            }
+        };
+    }
+
+    private static void writeReport(Path path, MessagesToUsageWriter.Serializer serializer, UsageReport report) throws IOException {
+        createParentDirectories(path);
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(path), UTF_8)) {
+            serializer.writeValue(writer, report);
+        }
+    }
+
+    private static void createParentDirectories(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+    }
+
+    private Path outputOf(Input input) {
+        String fileName = input.file.getFileName().toString();
+        String reportName = fileName.substring(0, fileName.length() - ".ndjson".length()) + "." + options.format.extension;
+        Path outputDirectory = options.outputDirectory;
+        if (outputDirectory == null) {
+            return input.file.resolveSibling(reportName);
+        }
+        // Keeps files with the same name in different directories apart
+        return outputDirectory.resolve(input.root.relativize(input.file)).resolveSibling(reportName);
+    }
+
+    private static List<Input> findInputs(List<Path> paths) throws IOException {
+        List<Input> inputs = new ArrayList<>();
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    walk.filter(Files::isRegularFile)
+                            .filter(BatchUsageFormatter::isMessagesFile)
+                            .sorted()
+                            .forEach(file -> inputs.add(new Input(path, file)));
+                }
+            } else if (Files.isRegularFile(path) && isMessagesFile(path)) {
+                Path parent = path.toAbsolutePath().getParent();
+                inputs.add(new Input(parent == null ? path : parent, path.toAbsolutePath()));
+            } else {
+                throw new IOException("Not an .ndjson file or a directory: " + path);
+            }
+        }
+        return inputs;
+    }
+
+    private static boolean isMessagesFile(Path path) {
+        Path fileName = path.getFileName();
+        return fileName != null && fileName.toString().endsWith(".ndjson");
+    }
+
+    private void progress(String format, Object... args) {
+        if (!options.quiet) {
+            err.printf(Locale.ROOT, format + "%n", args);
+        }
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        double value = bytes;
+        String[] units = {"KiB", "MiB", "GiB", "TiB"};
+        int unit = -1;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format(Locale.ROOT, "%.1f %s", value, units[unit]);
+    }
+
+    private static final class Input {
+        private final Path root;
+        private final Path file;
+
+        private Input(Path root, Path file) {
+            this.root = root;
+            this.file = file;
+        }
+    }
+
+    private static final class Result {
+        private final int index;
+        private final Input input;
+        private final Path output;
+        private final @Nullable UsageReport report;
+        private final long bytes;
+        private final long nanos;
+
+        private Result(int index, Input input, Path output, @Nullable UsageReport report, long bytes, long nanos) {
+            this.index = index;
+            this.input = input;
+            this.output = output;
+            this.report = report;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+    }
+
+    enum Format {
+        USAGE("usage", "step-definitions.txt"),
+        USAGE_WITH_STEPS("usage-with-steps", "with-steps.txt"),
+        UNUSED("unused", "unused.txt"),
+        JSON("json", "json"),
+        HTML("html", "html");
+
+        private final String name;
+        private final String extension;
+
+        Format(String name, String extension) {
+            this.name = name;
+            this.extension = extension;
+        }
+
+        static Format of(String name) {
+            for (Format format : values()) {
+                if (format.name.equals(name)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unknown format: " + name);
+        }
+
+        private MessagesToUsageWriter.Serializer createSerializer(Options options) {
+            return switch (this) {
+                case USAGE, USAGE_WITH_STEPS -> {
+                    UsageReportSerializer.Builder builder = UsageReportSerializer.builder()
+                            .feature(UsageReportSerializer.PlainTextFeature.INCLUDE_STEPS, this == USAGE_WITH_STEPS)
+                            .maxStepsPerStepDefinition(options.maxSteps);
+                    String prefix = options.removeUriPrefix;
+                    if (prefix != null) {
+                        builder.removeUriPrefix(prefix);
+                    }
+                    yield builder.build();
+                }
+                case UNUSED -> new UnusedReportSerializer();
+                case JSON -> new JsonReportSerializer();
+                case HTML -> {
+                    HtmlReportSerializer.Builder builder = HtmlReportSerializer.builder()
+                            .maxMatchesPerStepDefinition(options.maxSteps);
+                    String prefix = options.removeUriPrefix;
+                    if (prefix != null) {
+                        builder.removeUriPrefix(prefix);
+                    }
+                    yield builder.build();
+                }
+            };
+        }
+
+        /**
+         * The requirements of the combined report, which never include all
+         * matches. Budgets require statistics, which are included in all but
+         * the unused format.
+         */
+        private MessagesToUsageWriter.Requirements combinedRequirements(Options options) {
+            return switch (this) {
+                case USAGE -> MessagesToUsageWriter.Requirements.statistics();
+                case UNUSED -> options.budgets == null ? MessagesToUsageWriter.Requirements.unused()
+                        : MessagesToUsageWriter.Requirements.statistics();
+                case USAGE_WITH_STEPS, JSON, HTML -> MessagesToUsageWriter.Requirements.topMatches(
+                        options.maxSteps >= 0 ? options.maxSteps : DEFAULT_COMBINED_MAX_STEPS);
+            };
+        }
+    }
+
+    private static final class Options {
+        private final List<Path> paths = new ArrayList<>();
+        private Format format = Format.USAGE;
+        private int maxSteps = -1;
+        private @Nullable String removeUriPrefix;
+        private @Nullable Path outputDirectory;
+        private @Nullable Path combined;
+        private @Nullable Path budgets;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private boolean quiet;
+        private boolean help;
+
+        private static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--format" -> options.format = Format.of(valueOf(args, ++i, arg));
+                    case "--max-steps" -> options.maxSteps = intValueOf(args, ++i, arg);
+                    case "--remove-uri-prefix" -> options.removeUriPrefix = valueOf(args, ++i, arg);
+                    case "--output-dir" -> options.outputDirectory = Paths.get(valueOf(args, ++i, arg));
+                    case "--combined" -> options.combined = Paths.get(valueOf(args, ++i, arg));
+                    case "--budgets" -> options.budgets = Paths.get(valueOf(args, ++i, arg));
+                    case "--threads" -> options.threads = intValueOf(args, ++i, arg);
+                    case "--quiet" -> options.quiet = true;
+                    case "--help" -> options.help = true;
+                    default -> {
+                        if (arg.startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown option: " + arg);
+                        }
+                        options.paths.add(Paths.get(arg));
+                    }
+                }
+            }
+            if (options.threads <= 0) {
+                throw new IllegalArgumentException("--threads must be positive, was " + options.threads);
+            }
+            if (options.paths.isEmpty() && !options.help) {
+                throw new IllegalArgumentException("No files or directories were provided");
+            }
+            return options;
+        }
+
+        private static String valueOf(String[] args, int index, String option) {
+            if (index >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            return args[index];
+        }
+
+        private static int intValueOf(String[] args, int index, String option) {
+            String value = valueOf(args, index, option);
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number for " + option + ": " + value, e);
+            }
+        }
+    }
+}
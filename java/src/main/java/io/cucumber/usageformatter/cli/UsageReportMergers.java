@@ -0,0 +1,55 @@
+package io.cucumber.usageformatter.cli;
+
+import io.cucumber.usageformatter.MessagesToUsageWriter;
+import io.cucumber.usageformatter.UsageReport;
+import org.jspecify.annotations.Nullable;
+
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Gives the command line access to the merger of usage reports, which is not
+ * part of the library's api.
+ * <p>
+ * The merger registers itself when it is initialized. This package is not
+ * exported, so outside the module nothing else can register a merger.
+ */
+public final class UsageReportMergers {
+
+    private static final String MERGER = "io.cucumber.usageformatter.UsageReportMerger";
+
+    private static volatile @Nullable Function<MessagesToUsageWriter.Requirements, Merger> factory;
+
+    private UsageReportMergers() {
+
+    }
+
+    /**
+     * Combines the usage reports of several test runs into one.
+     */
+    public interface Merger {
+
+        void add(UsageReport report);
+
+        UsageReport toReport();
+
+    }
+
+    public static void register(Function<MessagesToUsageWriter.Requirements, Merger> factory) {
+        UsageReportMergers.factory = requireNonNull(factory);
+    }
+
+    static Merger create(MessagesToUsageWriter.Requirements requirements) {
+        Function<MessagesToUsageWriter.Requirements, Merger> factory = UsageReportMergers.factory;
+        if (factory == null) {
+            try {
+                Class.forName(MERGER, true, UsageReportMergers.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Could not find " + MERGER, e);
+            }
+            factory = requireNonNull(UsageReportMergers.factory, "The merger did not register itself");
+        }
+        return factory.apply(requirements);
+    }
+}
@@ -0,0 +1,4 @@
+@NullMarked
+package io.cucumber.usageformatter.cli;
+
+import org.jspecify.annotations.NullMarked;
@@ -3,6 +3,8 @@ module io.cucumber.usageformatter {
     
     requires transitive io.cucumber.messages;
     requires io.cucumber.query;
+    // Only used by the command line, which is not exported
+    requires static io.cucumber.messages.ndjson;
 
     exports io.cucumber.usageformatter;
 }
@@ -0,0 +1,71 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.query.Query;
+import io.cucumber.query.Repository;
+import io.cucumber.usageformatter.MessagesToUsageWriterAcceptanceTest.TestCase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+
+import static io.cucumber.usageformatter.MessagesToUsageWriterAcceptanceTest.readMessages;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CheckpointWriterTest {
+
+    @Test
+    void writes_a_checkpoint_while_no_messages_are_written(@TempDir Path directory) throws Exception {
+        Query query = new Query(Repository.builder().build());
+        try (CheckpointWriter writer = new CheckpointWriter(directory, Duration.ofMillis(50))) {
+            for (Envelope envelope : readMessages(Paths.get("../testdata/src/minimal.ndjson"))) {
+                if (envelope.getStepDefinition().isPresent()) {
+                    writer.update(envelope, query);
+                }
+            }
+
+            Path manifest = directory.resolve(UsageCheckpoint.MANIFEST);
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (!Files.exists(manifest) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertThat(UsageCheckpoint.recover(directory).getStepDefinitions())
+                    .extracting(stepDefinition -> stepDefinition.getExpression().getSource())
+                    .containsExactly("I have {int} cukes in my belly");
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("io.cucumber.usageformatter.MessagesToUsageWriterAcceptanceTest#getSources")
+    void recovers_reports_from_a_checkpoint(Path source, @TempDir Path checkpoint) throws IOException {
+        MessagesToUsageWriter writer = MessagesToUsageWriter.builder()
+                .checkpoint(checkpoint, Duration.ofNanos(1))
+                .target(new UnusedReportSerializer(), new ByteArrayOutputStream())
+                .build();
+
+        // The writer is never closed, as if the process was killed
+        for (Envelope envelope : readMessages(source)) {
+            writer.write(envelope);
+        }
+
+        UsageReport report = UsageCheckpoint.recover(checkpoint);
+        for (Map.Entry<String, MessagesToUsageWriter.Serializer> format : Map.of(
+                "step-definitions.txt", UsageReportSerializer.builder().build(),
+                "unused.txt", new UnusedReportSerializer()).entrySet()) {
+            StringWriter out = new StringWriter();
+            format.getValue().writeValue(out, report);
+            TestCase testCase = new TestCase(source, format.getKey(), MessagesToUsageWriter.builder(format.getValue()));
+            assertThat(out.toString()).isEqualToIgnoringNewLines(Files.readString(testCase.expected));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.types.JavaMethod;
+import io.cucumber.messages.types.JavaStackTraceElement;
+import io.cucumber.messages.types.SourceReference;
+import io.cucumber.messages.types.StepDefinitionPattern;
+import io.cucumber.messages.types.StepDefinitionPatternType;
+import io.cucumber.usageformatter.DurationBudgets.Limit;
+import io.cucumber.usageformatter.DurationBudgets.Violation;
+import io.cucumber.usageformatter.UsageReport.StepDefinitionUsage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DurationBudgetsTest {
+
+    private static final SourceReference javaMethod = new SourceReference(null,
+            new JavaMethod("com.example.OrderSteps", "anOrderFor", List.of("java.lang.String")), null, null);
+    private static final SourceReference javaStackTraceElement = new SourceReference(null, null,
+            new JavaStackTraceElement("com.example.PaymentSteps", "PaymentSteps.java", "lambda$new$0"), null);
+
+    @Test
+    void mean_is_exceeded_beyond_the_margin_of_error() {
+        DurationBudgets budgets = DurationBudgets.builder()
+                .pattern("^an? .*$", Duration.ofMillis(40), null)
+                .build();
+        UsageReport report = report(
+                stepDefinition("a consistent step", javaMethod, 50, 50, 50, 50),
+                stepDefinition("an erratic step", javaMethod, 1, 100, 1, 100));
+
+        List<Violation> violations = budgets.evaluate(report);
+
+        assertThat(violations).hasSize(1);
+        Violation violation = violations.get(0);
+        assertThat(violation.getStepDefinition().getExpression().getSource()).isEqualTo("a consistent step");
+        assertThat(violation.getLimit()).isEqualTo(Limit.MEAN);
+        assertThat(violation.getMaximum()).isEqualTo(Duration.ofMillis(40));
+        assertThat(violation.getBudget().getTarget()).isEqualTo("^an? .*$");
+        assertThat(violation.getBudget().getMaxMean()).contains(Duration.ofMillis(40));
+        assertThat(violation.getBudget().getMaxSum()).isEmpty();
+    }
+
+    @Test
+    void sum_is_exceeded() {
+        DurationBudgets budgets = DurationBudgets.builder()
+                .pattern("a step", null, Duration.ofMillis(100))
+                .build();
+
+        List<Violation> violations = budgets.evaluate(report(stepDefinition("a step", javaMethod, 50, 50, 50)));
+
+        assertThat(violations).extracting(Violation::getLimit).containsExactly(Limit.SUM);
+        assertThat(violations.get(0).getStatistics().getSum())
+                .isEqualTo(new io.cucumber.messages.types.Duration(0L, 150_000_000));
+    }
+
+    @Test
+    void applies_budgets_to_glue_classes() {
+        DurationBudgets budgets = DurationBudgets.builder()
+                .glueClass("com.example.OrderSteps", Duration.ZERO, null)
+                .glueClass("com.example.PaymentSteps", Duration.ZERO, null)
+                .build();
+        UsageReport report = report(
+                stepDefinition("an order", javaMethod, 10),
+                stepDefinition("a payment", javaStackTraceElement, 10),
+                stepDefinition("a delivery", new SourceReference("steps.ts", null, null, null), 10),
+                // Unused step definitions have no statistics
+                new StepDefinitionUsage(pattern("a refund"), javaMethod, null, Collections.emptyList(), 0));
+
+        assertThat(budgets.evaluate(report))
+                .extracting(violation -> violation.getStepDefinition().getExpression().getSource())
+                .containsExactly("an order", "a payment");
+    }
+
+    @Test
+    void requires_a_valid_budget() {
+        DurationBudgets.Builder builder = DurationBudgets.builder();
+        assertThrows(IllegalArgumentException.class, () -> builder.pattern("a step", null, null));
+        assertThrows(IllegalArgumentException.class, () -> builder.pattern("(", Duration.ZERO, null));
+        assertThrows(IllegalArgumentException.class, () -> builder.glueClass("Steps", null, Duration.ofSeconds(-1)));
+    }
+
+    @Test
+    void reads_budgets_from_a_file(@TempDir Path temp) throws IOException {
+        Path file = temp.resolve("budgets.txt");
+        Files.writeString(file, String.join("\n",
+                "# Orders are slow, but not that slow",
+                "",
+                "mean=40ms sum=0.1s pattern=a consistent step",
+                "mean=1 glue=com.example.OrderSteps"), UTF_8);
+
+        DurationBudgets budgets = DurationBudgets.read(file);
+
+        assertThat(budgets.evaluate(report(stepDefinition("a consistent step", javaMethod, 50, 50, 50))))
+                .extracting(Violation::getLimit)
+                .containsExactly(Limit.MEAN, Limit.SUM);
+    }
+
+    @Test
+    void rejects_invalid_budget_files() {
+        assertThat(assertThrows(IllegalArgumentException.class, () -> DurationBudgets.parse(List.of("mean=1"))))
+                .hasMessage("Invalid budget on line 1: missing pattern= or glue=");
+        assertThat(assertThrows(IllegalArgumentException.class, () -> DurationBudgets.parse(List.of("#", "max=1 glue=Steps"))))
+                .hasMessage("Invalid budget on line 2: unexpected 'max=1'");
+        assertThat(assertThrows(IllegalArgumentException.class, () -> DurationBudgets.parse(List.of("mean=fast glue=Steps"))))
+                .hasMessage("Invalid budget on line 1: not a duration 'fast'");
+        assertThat(assertThrows(IllegalArgumentException.class, () -> DurationBudgets.parse(List.of("mean=0.0000001ms glue=Steps"))))
+                .hasMessage("Invalid budget on line 1: not a duration '0.0000001ms'");
+        assertThrows(IllegalArgumentException.class, () -> DurationBudgets.parse(List.of("mean=1 glue=Steps extra")));
+    }
+
+    @Test
+    void serializer_writes_violations() throws IOException {
+        DurationBudgets budgets = DurationBudgets.builder()
+                .pattern("a step", Duration.ofMillis(40), Duration.ofMillis(100))
+                .build();
+        BudgetReportSerializer serializer = new BudgetReportSerializer(budgets);
+        UsageReport exceeded = report(stepDefinition("a step", javaMethod, 50, 50, 50));
+        UsageReport withinBudget = report(stepDefinition("a step", javaMethod, 10));
+
+        StringWriter out = new StringWriter();
+        serializer.writeValue(out, exceeded);
+
+        assertThat(out.toString())
+                .contains("2 step definition budget(s) exceeded")
+                .contains("0.050s ± 0.000s")
+                .contains("0.150s")
+                .contains("com.example.OrderSteps.anOrderFor(java.lang.String)");
+        assertThat(serializer.requirements()).isSameAs(MessagesToUsageWriter.Requirements.statistics());
+
+        // Writing a report does not depend on earlier reports
+        StringWriter within = new StringWriter();
+        serializer.writeValue(within, withinBudget);
+        assertThat(within.toString()).isEmpty();
+        assertThat(budgets.evaluate(withinBudget)).isEmpty();
+    }
+
+    private static UsageReport report(StepDefinitionUsage... stepDefinitions) {
+        return new UsageReport(List.of(stepDefinitions), null);
+    }
+
+    private static StepDefinitionUsage stepDefinition(String source, SourceReference sourceReference, long... millis) {
+        DurationAccumulator accumulator = new DurationAccumulator();
+        for (long duration : millis) {
+            accumulator.add(Duration.ofMillis(duration).toNanos());
+        }
+        return new StepDefinitionUsage(pattern(source), sourceReference, accumulator, Collections.emptyList(), millis.length);
+    }
+
+    private static StepDefinitionPattern pattern(String source) {
+        return new StepDefinitionPattern(source, StepDefinitionPatternType.CUCUMBER_EXPRESSION);
+    }
+}
@@ -1,9 +1,11 @@
 package io.cucumber.usageformatter;
 
+import io.cucumber.messages.types.Timestamp;
 import io.cucumber.usageformatter.UsageReport.Statistics;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
@@ -23,6 +25,20 @@ public class DurationsTest {
         assertThat(toBigDecimalSeconds(createDuration(1L, 0))).isEqualTo(BigDecimal.valueOf(1_000_000_000, 9));
     }
 
+    @Test
+    void testTimestamps() {
+        Timestamp timestamp = new Timestamp(2L, 345_678_901);
+        assertThat(Durations.toNanos(timestamp)).isEqualTo(2_345_678_901L);
+        assertThat(Durations.toMicros(timestamp)).isEqualTo(2_345_678L);
+    }
+
+    @Test
+    void testFormatDuration() {
+        assertThat(Durations.formatDuration(Duration.ofMillis(1250))).isEqualTo("1.250s");
+        assertThat(Durations.formatDuration(Duration.ofNanos(-1_500_000))).isEqualTo("-0.002s");
+        assertThat(Durations.formatDuration(createDuration(0L, 500_000))).isEqualTo("0.000s");
+    }
+
     @Test
     void createStatistics_without_values() {
         Statistics statistics = Durations.createStatistics(Collections.emptyList());
@@ -56,6 +72,41 @@ public class DurationsTest {
         assertThat(statistics).extracting(Statistics::getMoe95).isEqualTo(createDuration(1L, 440164599));
     }
 
+    @Test
+    void accumulator_keeps_exact_sum_of_squares() {
+        DurationAccumulator accumulator = new DurationAccumulator();
+        long hour = Duration.ofHours(1).toNanos();
+        accumulator.add(hour);
+        accumulator.add(hour);
+        accumulator.add(3);
+
+        BigInteger expected = BigInteger.valueOf(hour).pow(2).shiftLeft(1).add(BigInteger.valueOf(9));
+        assertThat(accumulator.getCount()).isEqualTo(3);
+        assertThat(accumulator.getSumNanos()).isEqualTo(2 * hour + 3);
+        assertThat(accumulator.getSumOfSquaresNanos()).isEqualTo(expected);
+    }
+
+    @Test
+    void accumulator_creates_same_statistics() {
+        DurationAccumulator accumulator = new DurationAccumulator();
+        accumulator.add(Duration.ofSeconds(1).toNanos());
+        accumulator.add(Duration.ofSeconds(2).toNanos());
+        accumulator.add(Duration.ofSeconds(4).toNanos());
+        Statistics statistics = accumulator.toStatistics();
+
+        assertThat(statistics).extracting(Statistics::getSum).isEqualTo(createDuration(7L, 0));
+        assertThat(statistics).extracting(Statistics::getMean).isEqualTo(createDuration(2L, 333333333));
+        assertThat(statistics).extracting(Statistics::getMoe95).isEqualTo(createDuration(1L, 440164599));
+    }
+
+    @Test
+    void slowestFirst_is_stable() {
+        long[] nanos = {1, 3, 2, 3, 1, 5};
+        assertThat(Durations.slowestFirst(nanos, nanos.length)).containsExactly(5, 1, 3, 2, 0, 4);
+        assertThat(Durations.slowestFirst(nanos, 3)).containsExactly(1, 2, 0);
+        assertThat(Durations.slowestFirst(nanos, 0)).isEmpty();
+    }
+
     private static io.cucumber.messages.types.Duration createDuration(long seconds, int nanos) {
         return new io.cucumber.messages.types.Duration(seconds, nanos);
     }
@@ -0,0 +1,69 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.Convertor;
+import io.cucumber.messages.types.Location;
+import io.cucumber.messages.types.SourceReference;
+import io.cucumber.messages.types.StepDefinitionPattern;
+import io.cucumber.messages.types.StepDefinitionPatternType;
+import io.cucumber.usageformatter.UsageReport.StepDefinitionUsage;
+import io.cucumber.usageformatter.UsageReport.StepUsage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.cucumber.usageformatter.MessagesToUsageWriterAcceptanceTest.writeMessages;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HtmlReportSerializerTest {
+
+    @ParameterizedTest
+    @MethodSource("io.cucumber.usageformatter.MessagesToUsageWriterAcceptanceTest#getSources")
+    void writes_a_self_contained_page(Path source) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeMessages(source, MessagesToUsageWriter.builder(HtmlReportSerializer.builder().build()).build(bytes));
+
+        assertThat(bytes.toString(UTF_8))
+                .startsWith("<!DOCTYPE html>")
+                .contains("<script id=\"usage-data\" type=\"application/json\">{\"strings\":[")
+                .doesNotContain("/*usage-data*/")
+                // Self-contained
+                .doesNotContain("<script src=")
+                .doesNotContain("<link");
+    }
+
+    @Test
+    void writes_only_the_slowest_matches() throws IOException {
+        HtmlReportSerializer serializer = HtmlReportSerializer.builder()
+                .maxMatchesPerStepDefinition(2)
+                .removeUriPrefix("samples/")
+                .build();
+
+        StringWriter out = new StringWriter();
+        serializer.writeValue(out, new UsageReport(List.of(stepDefinition(10, 40, 20, 30)), null));
+
+        assertThat(out.toString())
+                .contains("\"strings\":[\"a step\",\"steps.ts:3\",\"a step 40\",\"a.feature\",\"a step 30\"]")
+                .contains("\"matches\":{\"stepDefinition\":[0,0],\"text\":[2,4],\"uri\":[3,3],\"line\":[0,0],\"duration\":[40000000,30000000]}");
+    }
+
+    private static StepDefinitionUsage stepDefinition(long... millis) {
+        SourceReference sourceReference = new SourceReference("samples/steps.ts", null, null, new Location(3L, null));
+        StepDefinitionPattern pattern = new StepDefinitionPattern("a step", StepDefinitionPatternType.CUCUMBER_EXPRESSION);
+        DurationAccumulator accumulator = new DurationAccumulator();
+        List<StepUsage> matches = new ArrayList<>();
+        for (long duration : millis) {
+            accumulator.add(Duration.ofMillis(duration).toNanos());
+            matches.add(new StepUsage("a step " + duration, Convertor.toMessage(Duration.ofMillis(duration)), "samples/a.feature", null));
+        }
+        return new StepDefinitionUsage(pattern, sourceReference, accumulator, matches, millis.length);
+    }
+}
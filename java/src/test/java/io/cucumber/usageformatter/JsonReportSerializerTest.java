@@ -0,0 +1,38 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.types.Location;
+import io.cucumber.messages.types.SourceReference;
+import io.cucumber.messages.types.StepDefinitionPattern;
+import io.cucumber.messages.types.StepDefinitionPatternType;
+import io.cucumber.usageformatter.UsageReport.StepDefinitionUsage;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonReportSerializerTest {
+
+    @Test
+    void escapes_strings_like_jackson() throws IOException {
+        DurationAccumulator accumulator = new DurationAccumulator();
+        accumulator.add(1_000_000L);
+        UsageReport report = new UsageReport(List.of(new StepDefinitionUsage(
+                new StepDefinitionPattern("^(?<name>.*) & \"more\" <\\d+>\b\f\u0001\u001f\u007f\u2028\u2029/é$",
+                        StepDefinitionPatternType.REGULAR_EXPRESSION),
+                new SourceReference("samples/<escaping> & more.ts", null, null, new Location(1L, null)),
+                accumulator,
+                List.of(),
+                1
+        )), null);
+
+        StringWriter expected = new StringWriter();
+        MessagesToUsageWriterAcceptanceTest.serializer.writeValue(expected, report);
+        StringWriter actual = new StringWriter();
+        new JsonReportSerializer().writeValue(actual, report);
+
+        assertThat(actual.toString()).isEqualToIgnoringNewLines(expected.toString());
+    }
+}
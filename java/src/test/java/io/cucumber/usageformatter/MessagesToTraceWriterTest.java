@@ -0,0 +1,141 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.messages.types.TestCaseFinished;
+import io.cucumber.messages.types.TestCaseStarted;
+import io.cucumber.messages.types.Timestamp;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.cucumber.usageformatter.MessagesToUsageWriterAcceptanceTest.readMessages;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MessagesToTraceWriterTest {
+
+    @Test
+    void it_writes_an_empty_trace() throws IOException {
+        String out = renderAsTrace();
+        assertThat(out)
+                .startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[")
+                .contains("\"name\":\"process_name\"")
+                .endsWith("]}");
+    }
+
+    @Test
+    void it_places_concurrent_test_cases_on_separate_lanes() throws IOException {
+        String out = renderAsTrace(
+                Envelope.of(new TestCaseStarted(0L, "1", "a", null, new Timestamp(1L, 0))),
+                Envelope.of(new TestCaseStarted(0L, "2", "b", null, new Timestamp(2L, 0))),
+                Envelope.of(new TestCaseFinished("1", new Timestamp(3L, 0), false)),
+                // Reuses the lane that was freed
+                Envelope.of(new TestCaseStarted(0L, "3", "c", null, new Timestamp(4L, 0))),
+                Envelope.of(new TestCaseFinished("2", new Timestamp(5L, 0), false)),
+                Envelope.of(new TestCaseFinished("3", new Timestamp(6L, 0), false)));
+
+        assertThat(out)
+                .contains("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":1,\"args\":{\"name\":\"lane 0\"}}")
+                .contains("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":2,\"args\":{\"name\":\"lane 1\"}}")
+                .doesNotContain("lane 2")
+                .contains("{\"name\":\"c\",\"cat\":\"test case\",\"ph\":\"B\",\"ts\":4000000,\"pid\":1,\"tid\":1,");
+    }
+
+    @Test
+    void it_places_test_cases_on_their_worker() throws IOException {
+        String out = renderAsTrace(
+                Envelope.of(new TestCaseStarted(0L, "1", "a", "worker-1", new Timestamp(1L, 500_000))),
+                Envelope.of(new TestCaseFinished("1", new Timestamp(2L, 0), false)),
+                // Unknown test cases are ignored
+                Envelope.of(new TestCaseFinished("2", new Timestamp(3L, 0), false)));
+
+        assertThat(out)
+                .contains("\"args\":{\"name\":\"worker worker-1\"}")
+                .contains("\"ph\":\"B\",\"ts\":1000500,\"pid\":1,\"tid\":1,")
+                .contains("{\"cat\":\"test case\",\"ph\":\"E\",\"ts\":2000000,\"pid\":1,\"tid\":1}");
+    }
+
+    @Test
+    void it_throws_when_writing_after_close() throws IOException {
+        MessagesToTraceWriter writer = MessagesToTraceWriter.builder().build(new ByteArrayOutputStream());
+        writer.close();
+        assertThrows(IOException.class, () -> writer.write(
+                Envelope.of(new TestCaseFinished("1", new Timestamp(0L, 0), false))));
+    }
+
+    @Test
+    void it_can_be_closed_twice() throws IOException {
+        MessagesToTraceWriter writer = MessagesToTraceWriter.builder().build(new ByteArrayOutputStream());
+        writer.close();
+        assertDoesNotThrow(writer::close);
+    }
+
+    static List<Path> getTraceSources() {
+        List<Path> sources = new ArrayList<>(MessagesToUsageWriterAcceptanceTest.getSources());
+        sources.add(Paths.get("../testdata/src/hooks-named.ndjson"));
+        sources.add(Paths.get("../testdata/src/retry.ndjson"));
+        return sources;
+    }
+
+    @ParameterizedTest
+    @MethodSource("getTraceSources")
+    void it_writes_balanced_trace_events(Path source) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MessagesToTraceWriter writer = MessagesToTraceWriter.builder()
+                .removeUriPrefix("samples/")
+                .build(bytes)) {
+            for (Envelope envelope : readMessages(source)) {
+                writer.write(envelope);
+            }
+            // Names are evicted once their test case has finished
+            assertThat(writer.getRetainedNameCount()).isZero();
+        }
+
+        JsonNode events = JsonMapper.builder().build()
+                .readTree(bytes.toString(UTF_8))
+                .get("traceEvents");
+        Map<Integer, Integer> depthByThread = new LinkedHashMap<>();
+        int testCases = 0;
+        for (int i = 0; i < events.size(); i++) {
+            JsonNode event = events.get(i);
+            int threadId = event.get("tid").asInt();
+            switch (event.get("ph").asString()) {
+                case "B" -> {
+                    int depth = depthByThread.merge(threadId, 1, Integer::sum);
+                    // Steps are nested in test cases
+                    assertThat(event.get("cat").asString()).isEqualTo(depth == 1 ? "test case" : "step");
+                    if (depth == 1) {
+                        testCases++;
+                    }
+                }
+                case "E" -> assertThat(depthByThread.merge(threadId, -1, Integer::sum)).isNotNegative();
+                default -> assertThat(event.get("ph").asString()).isEqualTo("M");
+            }
+        }
+        assertThat(depthByThread.values()).containsOnly(0);
+        assertThat(testCases).isPositive();
+    }
+
+    private static String renderAsTrace(Envelope... messages) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MessagesToTraceWriter writer = MessagesToTraceWriter.builder().build(bytes)) {
+            for (Envelope message : messages) {
+                writer.write(message);
+            }
+        }
+        return bytes.toString(UTF_8);
+    }
+}
@@ -37,7 +37,7 @@ class MessagesToUsageWriterAcceptanceTest {
             .map(json -> json.deserializer(Envelope.class))
             .orElseThrow()::readValue;
 
-    private static final MessagesToUsageWriter.Serializer serializer = JsonMapper.builder()
+    static final MessagesToUsageWriter.Serializer serializer = JsonMapper.builder()
             .changeDefaultPropertyInclusion(value -> value
                     .withContentInclusion(NON_ABSENT)
                     .withValueInclusion(NON_ABSENT)
@@ -54,27 +54,36 @@ class MessagesToUsageWriterAcceptanceTest {
             .build()
             .writerWithDefaultPrettyPrinter()::writeValue;
 
-    static List<TestCase> acceptance() {
-        Map<String, MessagesToUsageWriter.Builder> formats = new LinkedHashMap<>();
-        formats.put("json", MessagesToUsageWriter.builder(serializer));
-        formats.put("unused.txt", MessagesToUsageWriter.builder(new UnusedReportSerializer()));
-        formats.put("step-definitions.txt", MessagesToUsageWriter.builder(UsageReportSerializer.builder().build()));
-        formats.put("with-steps.txt", MessagesToUsageWriter.builder(UsageReportSerializer.builder()
+    private static Map<String, MessagesToUsageWriter.Serializer> formats() {
+        Map<String, MessagesToUsageWriter.Serializer> formats = new LinkedHashMap<>();
+        formats.put("json", serializer);
+        formats.put("unused.txt", new UnusedReportSerializer());
+        formats.put("step-definitions.txt", UsageReportSerializer.builder().build());
+        formats.put("with-steps.txt", UsageReportSerializer.builder()
                 .feature(UsageReportSerializer.PlainTextFeature.INCLUDE_STEPS, true)
                 .maxStepsPerStepDefinition(5)
-                .build()));
+                .build());
+        formats.put("html", HtmlReportSerializer.builder()
+                .maxMatchesPerStepDefinition(5)
+                .removeUriPrefix("samples/")
+                .build());
+        return formats;
+    }
+
+    static List<TestCase> acceptance() {
+        Map<String, MessagesToUsageWriter.Serializer> formats = formats();
 
         List<Path> sources = getSources();
 
         List<TestCase> testCases = new ArrayList<>();
         sources.forEach(path ->
                 formats.forEach((formatName, format) ->
-                        testCases.add(new TestCase(path, formatName, format))));
+                        testCases.add(new TestCase(path, formatName, MessagesToUsageWriter.builder(format)))));
 
         return testCases;
     }
 
-    private static List<Path> getSources() {
+    static List<Path> getSources() {
         return Arrays.asList(
                 Paths.get("../testdata/src/ambiguous.ndjson"),
                 Paths.get("../testdata/src/minimal.ndjson"),
@@ -103,6 +112,64 @@ class MessagesToUsageWriterAcceptanceTest {
         assertThat(bytes.toString(UTF_8)).isEqualToIgnoringNewLines(Files.readString(testCase.expected));
     }
 
+    @ParameterizedTest
+    @MethodSource("getSources")
+    void testAllFormatsAtOnce(Path source) throws IOException {
+        assertAllFormats(source, MessagesToUsageWriter.builder()
+                .parallelSerialization(true));
+    }
+
+    @ParameterizedTest
+    @MethodSource("getSources")
+    void testAllFormatsWithMatchesSpilledToDisk(Path source) throws IOException {
+        assertAllFormats(source, MessagesToUsageWriter.builder()
+                .spillMatchesToDisk(0));
+    }
+
+    private static void assertAllFormats(Path source, MessagesToUsageWriter.Builder builder) throws IOException {
+        Map<String, ByteArrayOutputStream> outputs = new LinkedHashMap<>();
+        formats().forEach((format, serializer) -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            outputs.put(format, out);
+            builder.target(serializer, out);
+        });
+
+        writeMessages(source, builder.build());
+
+        for (Map.Entry<String, ByteArrayOutputStream> output : outputs.entrySet()) {
+            TestCase testCase = new TestCase(source, output.getKey(), builder);
+            assertThat(output.getValue().toString(UTF_8))
+                    .isEqualToIgnoringNewLines(Files.readString(testCase.expected));
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("getSources")
+    void testJsonReportSerializer(Path source) throws IOException {
+        TestCase testCase = new TestCase(source, "json", MessagesToUsageWriter.builder(new JsonReportSerializer()));
+        ByteArrayOutputStream bytes = writeUsageReport(testCase, new ByteArrayOutputStream(), testCase.builder);
+        assertThat(bytes.toString(UTF_8)).isEqualToIgnoringNewLines(Files.readString(testCase.expected));
+    }
+
+    static List<Envelope> readMessages(Path source) throws IOException {
+        try (InputStream in = Files.newInputStream(source);
+             NdjsonToMessageReader reader = new NdjsonToMessageReader(in, deserializer)) {
+            return reader.lines().toList();
+        }
+    }
+
+    static void writeMessages(Path source, MessagesToUsageWriter writer) throws IOException {
+        try (InputStream in = Files.newInputStream(source)) {
+            try (NdjsonToMessageReader reader = new NdjsonToMessageReader(in, deserializer)) {
+                try (writer) {
+                    for (Envelope envelope : reader.lines().toList()) {
+                        writer.write(envelope);
+                    }
+                }
+            }
+        }
+    }
+
     @ParameterizedTest
     @MethodSource("acceptance")
     @Disabled
@@ -120,7 +187,7 @@ class MessagesToUsageWriterAcceptanceTest {
         private final Path source;
         private final String format;
         private final MessagesToUsageWriter.Builder builder;
-        private final Path expected;
+        final Path expected;
 
         private final String name;
 
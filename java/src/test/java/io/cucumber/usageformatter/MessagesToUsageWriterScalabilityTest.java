@@ -0,0 +1,175 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.NdjsonToMessageReader;
+import io.cucumber.messages.ndjson.Json;
+import io.cucumber.messages.types.Envelope;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Guards against changes that make writing the usage report super-linear in
+ * time or that increase the retained heap per step execution.
+ * <p>
+ * Runs with {@code mvn test -Pscalability}. Excluded from regular builds.
+ */
+@Tag("scalability")
+class MessagesToUsageWriterScalabilityTest {
+
+    private static final NdjsonToMessageReader.Deserializer deserializer = Json.instance()
+            .map(json -> json.deserializer(Envelope.class))
+            .orElseThrow()::readValue;
+
+    private static final int STEPS_PER_PICKLE = 10;
+    private static final int STEP_DEFINITIONS = 50;
+    private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+    private static final int RUNS_PER_SIZE = 3;
+    // A quadratic algorithm would be ten times slower per step, per size
+    private static final double MAX_SLOWDOWN_PER_STEP = 3.0;
+    // About 1 KiB is retained per step, mostly by the messages in the query.
+    // Half as much again leaves room for noise, but not for a regression.
+    private static final long MAX_RETAINED_BYTES_PER_STEP = 1536;
+
+    @Test
+    void build_and_serialize_time_grows_near_linearly() throws IOException {
+        // Warm up the JIT
+        measure(SIZES[0]);
+
+        Map<Integer, Double> nanosPerStep = new LinkedHashMap<>();
+        for (int size : SIZES) {
+            nanosPerStep.put(size, medianCloseNanos(size) / (double) size);
+        }
+
+        // Successive sizes, because fixed costs dominate the smallest size
+        for (int i = 1; i < SIZES.length; i++) {
+            assertThat(nanosPerStep.get(SIZES[i]))
+                    .describedAs("Nanoseconds per step to build and serialize %,d steps, compared to %,d steps",
+                            SIZES[i], SIZES[i - 1])
+                    .isLessThanOrEqualTo(nanosPerStep.get(SIZES[i - 1]) * MAX_SLOWDOWN_PER_STEP);
+        }
+    }
+
+    @Test
+    void retained_heap_per_step_stays_within_budget() throws IOException {
+        int size = SIZES[SIZES.length - 1];
+        Measurement measurement = measure(size);
+        assertThat(measurement.retainedBytes / size)
+                .describedAs("Bytes retained per step after ingesting %,d steps", size)
+                .isLessThanOrEqualTo(MAX_RETAINED_BYTES_PER_STEP);
+    }
+
+    private static long medianCloseNanos(int steps) throws IOException {
+        long[] closeNanos = new long[RUNS_PER_SIZE];
+        for (int i = 0; i < RUNS_PER_SIZE; i++) {
+            closeNanos[i] = measure(steps).closeNanos;
+        }
+        Arrays.sort(closeNanos);
+        return closeNanos[RUNS_PER_SIZE / 2];
+    }
+
+    private static Measurement measure(int steps) throws IOException {
+        long before = usedHeap();
+        MessagesToUsageWriter writer = MessagesToUsageWriter.builder()
+                .target(new JsonReportSerializer(), OutputStream.nullOutputStream())
+                .target(new UnusedReportSerializer(), OutputStream.nullOutputStream())
+                .target(UsageReportSerializer.builder()
+                        .feature(UsageReportSerializer.PlainTextFeature.INCLUDE_STEPS, true)
+                        .maxStepsPerStepDefinition(5)
+                        .build(), OutputStream.nullOutputStream())
+                .build();
+        new MessagesGenerator(writer).generate(steps);
+        long retained = usedHeap() - before;
+
+        long start = System.nanoTime();
+        writer.close();
+        return new Measurement(System.nanoTime() - start, retained);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static final class Measurement {
+        private final long closeNanos;
+        private final long retainedBytes;
+
+        private Measurement(long closeNanos, long retainedBytes) {
+            this.closeNanos = closeNanos;
+            this.retainedBytes = retainedBytes;
+        }
+    }
+
+    /**
+     * Generates the messages of a passing test run. Each pickle has the same
+     * number of steps, and steps are spread evenly over the step definitions.
+     */
+    private static final class MessagesGenerator {
+        private final MessagesToUsageWriter writer;
+        private final SplittableRandom random = new SplittableRandom(42);
+
+        private MessagesGenerator(MessagesToUsageWriter writer) {
+            this.writer = writer;
+        }
+
+        private void generate(int steps) throws IOException {
+            for (int d = 0; d < STEP_DEFINITIONS; d++) {
+                write("{\"stepDefinition\":{\"id\":\"sd-" + d + "\",\"pattern\":{\"type\":\"CUCUMBER_EXPRESSION\","
+                        + "\"source\":\"step {int} of definition " + d + "\"},"
+                        + "\"sourceReference\":{\"uri\":\"steps/Steps.java\",\"location\":{\"line\":" + (d + 1) + "}}}}");
+            }
+            write("{\"testRunStarted\":{\"id\":\"run\",\"timestamp\":{\"seconds\":0,\"nanos\":0}}}");
+            for (int p = 0; p < steps / STEPS_PER_PICKLE; p++) {
+                generatePickle(p);
+            }
+            write("{\"testRunFinished\":{\"testRunStartedId\":\"run\",\"timestamp\":{\"seconds\":0,\"nanos\":0},\"success\":true}}");
+        }
+
+        private void generatePickle(int p) throws IOException {
+            StringBuilder pickleSteps = new StringBuilder();
+            StringBuilder testSteps = new StringBuilder();
+            for (int k = 0; k < STEPS_PER_PICKLE; k++) {
+                int d = (p * STEPS_PER_PICKLE + k) % STEP_DEFINITIONS;
+                String separator = k == 0 ? "" : ",";
+                pickleSteps.append(separator)
+                        .append("{\"id\":\"ps-").append(p).append('-').append(k)
+                        .append("\",\"text\":\"step ").append(k).append(" of definition ").append(d)
+                        .append("\",\"type\":\"Action\",\"astNodeIds\":[]}");
+                testSteps.append(separator)
+                        .append("{\"id\":\"ts-").append(p).append('-').append(k)
+                        .append("\",\"pickleStepId\":\"ps-").append(p).append('-').append(k)
+                        .append("\",\"stepDefinitionIds\":[\"sd-").append(d)
+                        .append("\"],\"stepMatchArgumentsLists\":[]}");
+            }
+            write("{\"pickle\":{\"id\":\"p-" + p + "\",\"uri\":\"features/feature-" + (p % 100) + ".feature\","
+                    + "\"astNodeIds\":[],\"tags\":[],\"name\":\"scenario " + p + "\",\"language\":\"en\","
+                    + "\"steps\":[" + pickleSteps + "]}}");
+            write("{\"testCase\":{\"id\":\"tc-" + p + "\",\"pickleId\":\"p-" + p + "\",\"testSteps\":[" + testSteps + "],"
+                    + "\"testRunStartedId\":\"run\"}}");
+            write("{\"testCaseStarted\":{\"id\":\"tcs-" + p + "\",\"testCaseId\":\"tc-" + p + "\","
+                    + "\"timestamp\":{\"seconds\":0,\"nanos\":0},\"attempt\":0}}");
+            for (int k = 0; k < STEPS_PER_PICKLE; k++) {
+                write("{\"testStepFinished\":{\"testCaseStartedId\":\"tcs-" + p + "\",\"testStepId\":\"ts-" + p + "-" + k + "\","
+                        + "\"testStepResult\":{\"status\":\"PASSED\",\"duration\":{\"seconds\":0,\"nanos\":"
+                        + random.nextInt(1_000_000_000) + "}},\"timestamp\":{\"seconds\":0,\"nanos\":0}}}");
+            }
+            write("{\"testCaseFinished\":{\"testCaseStartedId\":\"tcs-" + p + "\","
+                    + "\"timestamp\":{\"seconds\":0,\"nanos\":0},\"willBeRetried\":false}}");
+        }
+
+        private void write(String json) throws IOException {
+            writer.write(deserializer.readValue(json));
+        }
+    }
+}
@@ -1,16 +1,35 @@
 package io.cucumber.usageformatter;
 
+import io.cucumber.messages.types.Duration;
 import io.cucumber.messages.types.Envelope;
 import io.cucumber.messages.types.TestRunFinished;
 import io.cucumber.messages.types.TestRunStarted;
 import io.cucumber.messages.types.Timestamp;
+import io.cucumber.query.Query;
+import io.cucumber.query.Repository;
+import io.cucumber.usageformatter.MessagesToUsageWriterAcceptanceTest.TestCase;
+import io.cucumber.usageformatter.UsageReport.Statistics;
+import io.cucumber.usageformatter.UsageReport.StepDefinitionUsage;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
 import static io.cucumber.messages.Convertor.toMessage;
+import static io.cucumber.query.Repository.RepositoryFeature.INCLUDE_GHERKIN_DOCUMENTS;
+import static io.cucumber.query.Repository.RepositoryFeature.INCLUDE_STEP_DEFINITIONS;
+import static io.cucumber.usageformatter.MessagesToUsageWriterAcceptanceTest.readMessages;
+import static io.cucumber.usageformatter.MessagesToUsageWriterAcceptanceTest.writeMessages;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
@@ -54,6 +73,157 @@ class MessagesToUsageWriterTest {
         assertDoesNotThrow(writer::close);
     }
 
+    @Test
+    void serializers_declare_their_requirements() {
+        assertThat(UsageReportSerializer.builder().build().requirements())
+                .isSameAs(MessagesToUsageWriter.Requirements.statistics());
+        assertThat(UsageReportSerializer.builder()
+                .feature(UsageReportSerializer.PlainTextFeature.INCLUDE_STEPS, true)
+                .build()
+                .requirements())
+                .isSameAs(MessagesToUsageWriter.Requirements.allMatches());
+        assertThat(new UnusedReportSerializer().requirements())
+                .isSameAs(MessagesToUsageWriter.Requirements.unused());
+        assertThat(MessagesToUsageWriter.Requirements.topMatches(5).getMaxMatchesPerStepDefinition())
+                .isEqualTo(5);
+    }
+
+    @Test
+    void it_requires_a_target() {
+        assertThrows(IllegalStateException.class, () -> MessagesToUsageWriter.builder().build());
+        assertThrows(IllegalStateException.class, () -> MessagesToUsageWriter.builder().build(new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void it_requires_positive_warm_up_executions() {
+        assertThrows(IllegalArgumentException.class, () -> MessagesToUsageWriter.builder().warmUpExecutions(0));
+    }
+
+    @Test
+    void it_requires_a_heap_budget_that_is_not_negative() {
+        assertThrows(IllegalArgumentException.class, () -> MessagesToUsageWriter.builder().spillMatchesToDisk(-1));
+        assertDoesNotThrow(() -> MessagesToUsageWriter.builder().spillMatchesToDisk(0));
+    }
+
+    @Test
+    void it_requires_a_positive_checkpoint_interval(@TempDir Path directory) {
+        assertThrows(IllegalArgumentException.class, () -> MessagesToUsageWriter.builder()
+                .checkpoint(directory, java.time.Duration.ofSeconds(-1)));
+        assertThrows(IllegalArgumentException.class, () -> MessagesToUsageWriter.builder()
+                .checkpoint(directory, java.time.Duration.ZERO));
+    }
+
+    @Test
+    void it_recovers_only_checkpoints(@TempDir Path directory) throws IOException {
+        assertThrows(NoSuchFileException.class, () -> UsageCheckpoint.recover(directory));
+        Files.writeString(directory.resolve(UsageCheckpoint.MANIFEST), "something else");
+        assertThrows(IOException.class, () -> UsageCheckpoint.recover(directory));
+    }
+
+    @Test
+    void it_writes_a_final_checkpoint(@TempDir Path directory) throws IOException {
+        MessagesToUsageWriter writer = MessagesToUsageWriter.builder()
+                .checkpoint(directory)
+                .target(new UnusedReportSerializer(), new ByteArrayOutputStream())
+                .build();
+        writer.write(Envelope.of(new TestRunStarted(new Timestamp(0L, 0), "some-id")));
+        writer.close();
+
+        assertThat(UsageCheckpoint.recover(directory).getStepDefinitions()).isEmpty();
+    }
+
+    @Test
+    void it_writes_a_final_checkpoint_when_a_report_fails(@TempDir Path directory) throws IOException {
+        MessagesToUsageWriter writer = MessagesToUsageWriter.builder()
+                .checkpoint(directory)
+                .target((out, report) -> {
+                    throw new IOException("report failed");
+                }, new ByteArrayOutputStream())
+                .build();
+        writer.write(Envelope.of(new TestRunStarted(new Timestamp(0L, 0), "some-id")));
+
+        IOException exception = assertThrows(IOException.class, writer::close);
+
+        assertThat(exception).hasMessage("report failed");
+        assertThat(UsageCheckpoint.recover(directory).getStepDefinitions()).isEmpty();
+    }
+
+    @Test
+    void it_writes_to_every_target() throws IOException {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        MessagesToUsageWriter.builder(new UnusedReportSerializer())
+                .target(new UnusedReportSerializer(), second)
+                .build(first)
+                .close();
+
+        assertThat(first.toString(UTF_8))
+                .isEqualTo(second.toString(UTF_8))
+                .contains("0 unused step definition(s)");
+    }
+
+    @Test
+    void requirements_are_combined() {
+        MessagesToUsageWriter.Requirements unused = MessagesToUsageWriter.Requirements.unused();
+        MessagesToUsageWriter.Requirements statistics = MessagesToUsageWriter.Requirements.statistics();
+        MessagesToUsageWriter.Requirements top5 = MessagesToUsageWriter.Requirements.topMatches(5);
+        MessagesToUsageWriter.Requirements all = MessagesToUsageWriter.Requirements.allMatches();
+
+        assertThat(unused.union(statistics).includesStatistics()).isTrue();
+        assertThat(unused.union(top5).getMaxMatchesPerStepDefinition()).isEqualTo(5);
+        assertThat(top5.union(all)).isSameAs(all);
+    }
+
+    @Test
+    void it_samples_matches_with_exact_statistics() throws IOException {
+        List<UsageReport> reports = new ArrayList<>();
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        MessagesToUsageWriter writer = MessagesToUsageWriter.builder()
+                .sampleMatches(3)
+                .target((out, report) -> reports.add(report), new ByteArrayOutputStream())
+                .target(UsageReportSerializer.builder()
+                        .feature(UsageReportSerializer.PlainTextFeature.INCLUDE_STEPS, true)
+                        .build(), text)
+                .build();
+
+        writeMessages(Paths.get("../testdata/src/multiple-features.ndjson"), writer);
+
+        UsageReport report = reports.get(0);
+        assertThat(report.getSampleSize()).contains(3);
+        StepDefinitionUsage stepDefinition = report.getStepDefinitions().get(0);
+        assertThat(stepDefinition.getMatches()).hasSize(3);
+        assertThat(stepDefinition.getMatchCount()).isEqualTo(9);
+        // Statistics are calculated from all matches
+        assertThat(stepDefinition.getDuration())
+                .extracting(Statistics::getSum)
+                .isEqualTo(new Duration(0L, 9_000_000));
+        assertThat(text.toString(UTF_8)).contains("showing 3 of 9");
+    }
+
+    @ParameterizedTest
+    @MethodSource("io.cucumber.usageformatter.MessagesToUsageWriterAcceptanceTest#getSources")
+    void it_writes_from_an_external_query(Path source) throws IOException {
+        Repository repository = Repository.builder()
+                .feature(INCLUDE_GHERKIN_DOCUMENTS, true)
+                .feature(INCLUDE_STEP_DEFINITIONS, true)
+                .build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MessagesToUsageWriter writer = MessagesToUsageWriter.builder(UsageReportSerializer.builder().build())
+                .query(new Query(repository))
+                .build(bytes);
+
+        // The owner of the repository updates it before writing
+        try (writer) {
+            for (Envelope envelope : readMessages(source)) {
+                repository.update(envelope);
+                writer.write(envelope);
+            }
+        }
+
+        TestCase testCase = new TestCase(source, "step-definitions.txt", MessagesToUsageWriter.builder());
+        assertThat(bytes.toString(UTF_8)).isEqualToIgnoringNewLines(Files.readString(testCase.expected));
+    }
+
     private static String renderAsSummary(Envelope... messages) throws IOException {
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
         try (MessagesToUsageWriter writer = create(bytes)) {
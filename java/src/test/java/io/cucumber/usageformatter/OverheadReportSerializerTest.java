@@ -0,0 +1,67 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.types.Duration;
+import io.cucumber.usageformatter.UsageReport.Overhead;
+import io.cucumber.usageformatter.UsageReport.UnattributedOverhead;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.cucumber.usageformatter.MessagesToUsageWriterAcceptanceTest.writeMessages;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OverheadReportSerializerTest {
+
+    @Test
+    void reports_unattributed_overhead() throws IOException {
+        List<UsageReport> reports = new ArrayList<>();
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        MessagesToUsageWriter writer = MessagesToUsageWriter.builder()
+                .unattributedOverhead(true)
+                .target((out, report) -> reports.add(report), new ByteArrayOutputStream())
+                .target(new OverheadReportSerializer(2), text)
+                .target(new JsonReportSerializer(), json)
+                .build();
+
+        writeMessages(Paths.get("../testdata/src/multiple-features.ndjson"), writer);
+
+        // Each test case takes 3ms, of which 1ms is spent in its only step
+        UnattributedOverhead overhead = reports.get(0).getUnattributedOverhead().orElseThrow();
+        assertThat(overhead.getScenarios()).hasSize(9);
+        Overhead scenario = overhead.getScenarios().get(0);
+        assertThat(scenario.getName()).isEqualTo("First scenario");
+        assertThat(scenario.getLocation()).contains("samples/multiple-features/multiple-features-1.feature:3");
+        assertThat(scenario.getUnattributed()).isEqualTo(new Duration(0L, 2_000_000));
+        assertThat(overhead.getFeatures())
+                .extracting(Overhead::getTestCases)
+                .containsExactly(3, 3, 3);
+        Overhead glueClass = overhead.getGlueClasses().get(0);
+        assertThat(glueClass.getName()).isEqualTo("samples/multiple-features/multiple-features.ts");
+        assertThat(glueClass.getWallTime()).isEqualTo(new Duration(0L, 27_000_000));
+        assertThat(glueClass.getStepTime()).isEqualTo(new Duration(0L, 9_000_000));
+        // Glue classes add up to the total of all test cases
+        assertThat(sumOfWallTimes(overhead.getGlueClasses())).isEqualTo(sumOfWallTimes(overhead.getFeatures()));
+
+        assertThat(text.toString(UTF_8))
+                .contains("Scenario")
+                .contains("showing 2 of 9")
+                .contains("0.018s")
+                .contains("67%");
+        assertThat(json.toString(UTF_8))
+                .contains("\"unattributedOverhead\": {")
+                .contains("\"name\": \"First scenario\"");
+    }
+
+    private static long sumOfWallTimes(List<Overhead> overheads) {
+        return overheads.stream()
+                .map(Overhead::getWallTime)
+                .mapToLong(Durations::toNanos)
+                .sum();
+    }
+}
@@ -0,0 +1,154 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.NdjsonToMessageReader;
+import io.cucumber.messages.ndjson.Json;
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.messages.types.TestStepFinished;
+import io.cucumber.query.Query;
+import io.cucumber.query.Repository;
+import io.cucumber.usageformatter.UsageReport.StepUsage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import static io.cucumber.query.Repository.RepositoryFeature.INCLUDE_GHERKIN_DOCUMENTS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpilledStepUsagesTest {
+
+    private static final int SIZE = 10_000;
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void splits_for_parallel_traversal() throws IOException {
+        SpilledStepUsages matches = createMatches();
+
+        Spliterator<StepUsage> spliterator = matches.spliterator();
+        Spliterator<StepUsage> prefix = spliterator.trySplit();
+        assertThat(prefix).isNotNull();
+        assertThat(prefix.estimateSize() + spliterator.estimateSize()).isEqualTo(SIZE);
+        assertThat(spliterator.hasCharacteristics(Spliterator.SUBSIZED)).isTrue();
+
+        List<Long> nanos = StreamSupport.stream(matches.spliterator(), true)
+                .map(StepUsage::getDuration)
+                .map(Durations::toNanos)
+                .toList();
+        assertThat(nanos).containsExactlyElementsOf(LongStream.range(0, SIZE).boxed().toList());
+    }
+
+    @Test
+    void does_not_split_once_started() throws IOException {
+        Spliterator<StepUsage> spliterator = createMatches().spliterator();
+
+        assertThat(spliterator.tryAdvance(stepUsage -> assertThat(stepUsage.getText()).isNotEmpty())).isTrue();
+        assertThat(spliterator.trySplit()).isNull();
+        assertThat(spliterator.estimateSize()).isEqualTo(SIZE - 1);
+    }
+
+    @Test
+    void sorts_the_slowest_once() throws IOException {
+        SpilledStepUsages matches = createMatches(100);
+
+        List<StepUsage> few = matches.slowest(10);
+        List<StepUsage> many = matches.slowest(SIZE / 2);
+
+        assertThat(few).extracting(StepUsage::getDuration).map(Durations::toNanos)
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, 10).map(i -> SIZE - i).boxed().toList());
+        assertThat(many).isInstanceOf(SpilledStepUsages.class).hasSize(SIZE / 2);
+        assertThat(many.get(0).getDuration()).isEqualTo(few.get(0).getDuration());
+        assertThat(Durations.toNanos(many.get(SIZE / 2 - 1).getDuration())).isEqualTo(SIZE / 2);
+    }
+
+    @Test
+    void reads_by_index() throws IOException {
+        SpilledStepUsages matches = createMatches();
+
+        for (int i = 0; i < SIZE; i++) {
+            assertThat(Durations.toNanos(matches.get(i).getDuration())).isEqualTo(i);
+        }
+        assertThat(Durations.toNanos(matches.get(42).getDuration())).isEqualTo(42);
+        assertThat(Durations.toNanos(matches.get(SIZE - 1).getDuration())).isEqualTo(SIZE - 1);
+    }
+
+    @Test
+    void spills_only_the_largest_step_definitions() throws IOException {
+        PickleStepTable pickleSteps = new PickleStepTable(createQuery());
+        try (StepUsageStore store = new StepUsageStore(10L * SpilledStepUsages.RECORD_BYTES, StepUsageStore.NO_SAMPLING, StepUsageStore.ALL_MATCHES)) {
+            for (int i = 0; i < 10; i++) {
+                store.add(0, i, 0);
+            }
+            store.add(1, 10, 0);
+
+            assertThat(store.getMatches(0, pickleSteps)).isInstanceOf(SpilledStepUsages.class).hasSize(10);
+            assertThat(store.getMatches(1, pickleSteps)).isInstanceOf(ColumnarStepUsages.class).hasSize(1);
+        }
+    }
+
+    @Test
+    void keeps_only_the_slowest_matches() throws IOException {
+        Query query = createQuery();
+        PickleStepTable pickleSteps = new PickleStepTable(query);
+        TestStepFinished testStepFinished = query.findAllTestStepFinished().iterator().next();
+        int pickleStepIndex = pickleSteps.indexOf(testStepFinished, query.findTestStepBy(testStepFinished).orElseThrow());
+        try (StepUsageStore store = new StepUsageStore(0, StepUsageStore.NO_SAMPLING, 3)) {
+            for (long nanos : new long[]{5, 1, 9, 5, 7, 5, 2}) {
+                store.add(0, nanos, pickleStepIndex);
+            }
+
+            // In order of execution, of equal durations the earliest
+            assertThat(store.getMatches(0, pickleSteps))
+                    .isInstanceOf(ColumnarStepUsages.class)
+                    .extracting(stepUsage -> Durations.toNanos(stepUsage.getDuration()))
+                    .containsExactly(5L, 9L, 7L);
+            assertThat(store.getSlowestMatches(0, 3, pickleSteps))
+                    .extracting(stepUsage -> Durations.toNanos(stepUsage.getDuration()))
+                    .containsExactly(9L, 7L, 5L);
+        }
+    }
+
+    private static Query createQuery() throws IOException {
+        Repository repository = Repository.builder()
+                .feature(INCLUDE_GHERKIN_DOCUMENTS, true)
+                .build();
+        Query query = new Query(repository);
+        try (InputStream in = Files.newInputStream(Paths.get("../testdata/src/minimal.ndjson"));
+             NdjsonToMessageReader reader = new NdjsonToMessageReader(in, Json.instance()
+                     .map(json -> json.deserializer(Envelope.class))
+                     .orElseThrow()::readValue)) {
+            reader.lines().forEach(repository::update);
+        }
+        return query;
+    }
+
+    private SpilledStepUsages createMatches() throws IOException {
+        return createMatches(SIZE);
+    }
+
+    private SpilledStepUsages createMatches(int sortBufferRecords) throws IOException {
+        Query query = createQuery();
+        PickleStepTable pickleSteps = new PickleStepTable(query);
+        TestStepFinished testStepFinished = query.findAllTestStepFinished().iterator().next();
+        int pickleStepIndex = pickleSteps.indexOf(testStepFinished, query.findTestStepBy(testStepFinished).orElseThrow());
+
+        long[] nanos = new long[SIZE];
+        int[] pickleStepIndexes = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            nanos[i] = i;
+            pickleStepIndexes[i] = pickleStepIndex;
+        }
+        Path file = temp.resolve("step-definition-0.matches");
+        SpilledStepUsages.append(file, nanos, pickleStepIndexes, SIZE);
+        return new SpilledStepUsages(file, SIZE, pickleSteps, sortBufferRecords);
+    }
+}
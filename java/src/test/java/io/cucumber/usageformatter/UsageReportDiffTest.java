@@ -0,0 +1,145 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.types.Location;
+import io.cucumber.messages.types.SourceReference;
+import io.cucumber.messages.types.StepDefinitionPattern;
+import io.cucumber.messages.types.StepDefinitionPatternType;
+import io.cucumber.usageformatter.UsageReport.StepDefinitionUsage;
+import io.cucumber.usageformatter.UsageReportDiff.Status;
+import io.cucumber.usageformatter.UsageReportDiff.StepDefinitionDiff;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UsageReportDiffTest {
+
+    @Test
+    void joins_step_definitions_by_pattern_and_source_reference() {
+        UsageReport baseline = report(
+                stepDefinition("a step", 3, 10, 10, 10),
+                stepDefinition("a removed step", 4, 10),
+                stepDefinition("a step that is no longer used", 5, 10),
+                stepDefinition("a slower step", 6, 10, 10, 10),
+                stepDefinition("an erratic step", 7, 1, 30, 1, 30));
+        UsageReport current = report(
+                stepDefinition("an added step", 8, 10),
+                stepDefinition("an erratic step", 7, 30, 1, 30, 1, 30),
+                stepDefinition("a slower step", 6, 20, 20, 20),
+                stepDefinition("a step that is no longer used", 5),
+                // Same pattern, different location
+                stepDefinition("a step", 9, 10),
+                stepDefinition("a step", 3, 10, 10, 10));
+
+        UsageReportDiff diff = UsageReportDiff.compare(baseline, current);
+
+        // Baseline order, followed by added step definitions
+        assertThat(diff.getStepDefinitions())
+                .extracting(stepDefinition -> stepDefinition.getStepDefinition().getExpression().getSource() + " " + stepDefinition.getStatus())
+                .containsExactly(
+                        "a step UNCHANGED",
+                        "a removed step REMOVED",
+                        "a step that is no longer used NEWLY_UNUSED",
+                        "a slower step CHANGED",
+                        "an erratic step UNCHANGED",
+                        "an added step ADDED",
+                        "a step ADDED");
+        assertThat(diff.hasChanges()).isTrue();
+
+        StepDefinitionDiff slower = diff.getStepDefinitions().get(3);
+        assertThat(slower.isSignificant()).isTrue();
+        assertThat(slower.getMeanDelta()).contains(Duration.ofMillis(10));
+        assertThat(slower.getSumDelta()).contains(Duration.ofMillis(30));
+
+        StepDefinitionDiff erratic = diff.getStepDefinitions().get(4);
+        assertThat(erratic.isSignificant()).isFalse();
+        assertThat(erratic.getMeanDelta()).isPresent();
+
+        StepDefinitionDiff removed = diff.getStepDefinitions().get(1);
+        assertThat(removed.getCurrent()).isEmpty();
+        assertThat(removed.getBaseline()).isPresent();
+        assertThat(removed.getMeanDelta()).isEmpty();
+        assertThat(removed.getSumDelta()).isEmpty();
+    }
+
+    @Test
+    void a_report_does_not_differ_from_itself() {
+        UsageReport report = report(stepDefinition("a step", 3, 10, 20));
+
+        UsageReportDiff diff = UsageReportDiff.compare(report, report);
+
+        assertThat(diff.hasChanges()).isFalse();
+        assertThat(diff.getStepDefinitions()).extracting(StepDefinitionDiff::getStatus).containsExactly(Status.UNCHANGED);
+    }
+
+    @Test
+    void compares_large_reports() {
+        List<StepDefinitionUsage> baseline = new ArrayList<>();
+        List<StepDefinitionUsage> current = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            baseline.add(stepDefinition("step " + i, i, 10));
+            current.add(stepDefinition("step " + (i + 1), i + 1, 10));
+        }
+
+        UsageReportDiff diff = UsageReportDiff.compare(report(baseline), report(current));
+
+        assertThat(diff.getStepDefinitions()).hasSize(50_001);
+        assertThat(diff.getStepDefinitions().get(0).getStatus()).isEqualTo(Status.REMOVED);
+        assertThat(diff.getStepDefinitions().get(50_000).getStatus()).isEqualTo(Status.ADDED);
+    }
+
+    @Test
+    void serializer_writes_changes() throws IOException {
+        UsageReport baseline = report(
+                stepDefinition("a slower step", 6, 10, 10, 10),
+                stepDefinition("a faster step", 7, 10, 10, 10),
+                stepDefinition("an unchanged step", 8, 10));
+        UsageReport current = report(
+                stepDefinition("a slower step", 6, 20, 20, 20),
+                stepDefinition("a faster step", 7, 5, 5, 5),
+                stepDefinition("an unchanged step", 8, 10));
+        UsageReportDiffSerializer serializer = new UsageReportDiffSerializer(baseline);
+
+        StringWriter out = new StringWriter();
+        serializer.writeValue(out, current);
+
+        assertThat(out.toString())
+                .contains("0 added, 0 removed, 0 newly unused, 2 changed, 1 unchanged")
+                .contains("+0.010s")
+                .contains("-0.015s")
+                .contains("steps.ts:6")
+                .doesNotContain("an unchanged step");
+        assertThat(serializer.requirements()).isSameAs(MessagesToUsageWriter.Requirements.statistics());
+
+        StringWriter unchanged = new StringWriter();
+        new UsageReportDiffSerializer(current).writeValue(unchanged, current);
+        assertThat(unchanged.toString()).doesNotContain("Status");
+    }
+
+    private static UsageReport report(StepDefinitionUsage... stepDefinitions) {
+        return report(List.of(stepDefinitions));
+    }
+
+    private static UsageReport report(List<StepDefinitionUsage> stepDefinitions) {
+        return new UsageReport(stepDefinitions, null);
+    }
+
+    private static StepDefinitionUsage stepDefinition(String source, long line, long... millis) {
+        SourceReference sourceReference = new SourceReference("steps.ts", null, null, new Location(line, null));
+        StepDefinitionPattern pattern = new StepDefinitionPattern(source, StepDefinitionPatternType.CUCUMBER_EXPRESSION);
+        if (millis.length == 0) {
+            return new StepDefinitionUsage(pattern, sourceReference, null, Collections.emptyList(), 0);
+        }
+        DurationAccumulator accumulator = new DurationAccumulator();
+        for (long duration : millis) {
+            accumulator.add(Duration.ofMillis(duration).toNanos());
+        }
+        return new StepDefinitionUsage(pattern, sourceReference, accumulator, Collections.emptyList(), millis.length);
+    }
+}
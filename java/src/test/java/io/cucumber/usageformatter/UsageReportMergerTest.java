@@ -0,0 +1,69 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.messages.Convertor;
+import io.cucumber.messages.types.Location;
+import io.cucumber.messages.types.SourceReference;
+import io.cucumber.messages.types.StepDefinitionPattern;
+import io.cucumber.messages.types.StepDefinitionPatternType;
+import io.cucumber.usageformatter.UsageReport.StepDefinitionUsage;
+import io.cucumber.usageformatter.UsageReport.StepUsage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UsageReportMergerTest {
+
+    @Test
+    void keeps_only_the_slowest_matches() {
+        UsageReportMerger merger = new UsageReportMerger(MessagesToUsageWriter.Requirements.topMatches(3));
+
+        merger.add(report(stepDefinition("first", 10, 40, 20)));
+        merger.add(report(stepDefinition("second", 30, 50, 20)));
+        UsageReport report = merger.toReport();
+
+        assertThat(report.getStepDefinitions()).hasSize(1);
+        StepDefinitionUsage stepDefinition = report.getStepDefinitions().get(0);
+        assertThat(stepDefinition.getMatchCount()).isEqualTo(6);
+        assertThat(stepDefinition.getMatches())
+                .extracting(stepUsage -> stepUsage.getText() + " " + Durations.toNanos(stepUsage.getDuration()) / 1_000_000)
+                // For equal durations, earlier reports go first
+                .containsExactly("second 50", "first 40", "second 30");
+    }
+
+    @Test
+    void keeps_no_matches_for_statistics() {
+        UsageReportMerger merger = new UsageReportMerger(MessagesToUsageWriter.Requirements.statistics());
+
+        merger.add(report(stepDefinition("first", 10, 20)));
+
+        assertThat(merger.toReport().getStepDefinitions().get(0).getMatches()).isEmpty();
+    }
+
+    @Test
+    void does_not_merge_all_matches() {
+        assertThatThrownBy(() -> new UsageReportMerger(MessagesToUsageWriter.Requirements.allMatches()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Only a limited number of matches can be merged");
+    }
+
+    private static UsageReport report(StepDefinitionUsage... stepDefinitions) {
+        return new UsageReport(List.of(stepDefinitions), null);
+    }
+
+    private static StepDefinitionUsage stepDefinition(String text, long... millis) {
+        SourceReference sourceReference = new SourceReference("steps.ts", null, null, new Location(3L, null));
+        StepDefinitionPattern pattern = new StepDefinitionPattern("a step", StepDefinitionPatternType.CUCUMBER_EXPRESSION);
+        DurationAccumulator accumulator = new DurationAccumulator();
+        List<StepUsage> matches = new ArrayList<>();
+        for (long duration : millis) {
+            accumulator.add(Duration.ofMillis(duration).toNanos());
+            matches.add(new StepUsage(text, Convertor.toMessage(Duration.ofMillis(duration)), "a.feature", null));
+        }
+        return new StepDefinitionUsage(pattern, sourceReference, accumulator, matches, millis.length);
+    }
+}
@@ -0,0 +1,41 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.usageformatter.UsageReport.StepUsage;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.cucumber.usageformatter.MessagesToUsageWriterAcceptanceTest.writeMessages;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UsageReportTest {
+
+    @ParameterizedTest
+    @MethodSource("io.cucumber.usageformatter.MessagesToUsageWriterAcceptanceTest#getSources")
+    void streams_the_same_report_as_it_materializes(Path source) throws IOException {
+        List<String> streamed = new ArrayList<>();
+        List<String> materialized = new ArrayList<>();
+        MessagesToUsageWriter writer = MessagesToUsageWriter.builder()
+                .spillMatchesToDisk(0)
+                .target((out, report) -> report.stream()
+                        .parallel()
+                        .map(stepDefinition -> stepDefinition.getExpression().getSource() + " "
+                                + stepDefinition.streamMatches().parallel().map(StepUsage::getText).toList())
+                        .forEachOrdered(streamed::add), new ByteArrayOutputStream())
+                .target((out, report) -> report.getStepDefinitions()
+                        .forEach(stepDefinition -> materialized.add(stepDefinition.getExpression().getSource() + " "
+                                + stepDefinition.getMatches().stream().map(StepUsage::getText).toList())), new ByteArrayOutputStream())
+                .build();
+
+        writeMessages(source, writer);
+
+        assertThat(streamed)
+                .isNotEmpty()
+                .isEqualTo(materialized);
+    }
+}
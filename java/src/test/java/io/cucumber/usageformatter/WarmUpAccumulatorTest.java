@@ -0,0 +1,100 @@
+package io.cucumber.usageformatter;
+
+import io.cucumber.usageformatter.UsageReport.Statistics;
+import io.cucumber.usageformatter.UsageReport.WarmUp;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class WarmUpAccumulatorTest {
+
+    private static final String STEP_DEFINITION_ID = "step-definition";
+
+    @Test
+    void separates_first_executions_from_steady_state() {
+        WarmUpAccumulator accumulator = new WarmUpAccumulator(1);
+        accumulator.add(STEP_DEFINITION_ID, Duration.ofMillis(100).toNanos());
+        for (int i = 1; i <= 10; i++) {
+            accumulator.add(STEP_DEFINITION_ID, Duration.ofMillis(10).toNanos());
+        }
+
+        WarmUp warmUp = accumulator.toWarmUp(STEP_DEFINITION_ID);
+
+        assertThat(warmUp).isNotNull();
+        assertThat(warmUp.getExecutions()).isEqualTo(1);
+        assertThat(warmUp.getDuration().getMean()).isEqualTo(createDuration(0L, 100_000_000));
+        assertThat(warmUp.getSteadyState()).map(Statistics::getMean).contains(createDuration(0L, 10_000_000));
+        assertThat(warmUp.getPenalty()).isEqualTo(createDuration(0L, 90_000_000));
+        assertThat(warmUp.getDrift()).isZero();
+        assertThat(warmUp.isDrifting()).isFalse();
+    }
+
+    @Test
+    void separates_step_definitions() {
+        WarmUpAccumulator accumulator = new WarmUpAccumulator(1);
+        accumulator.add("first", Duration.ofMillis(100).toNanos());
+        accumulator.add("second", Duration.ofMillis(50).toNanos());
+        accumulator.add("first", Duration.ofMillis(10).toNanos());
+
+        WarmUp first = accumulator.toWarmUp("first");
+        WarmUp second = accumulator.toWarmUp("second");
+
+        assertThat(first).isNotNull();
+        assertThat(first.getSteadyState()).map(Statistics::getMean).contains(createDuration(0L, 10_000_000));
+        assertThat(second).isNotNull();
+        assertThat(second.getDuration().getMean()).isEqualTo(createDuration(0L, 50_000_000));
+        assertThat(second.getSteadyState()).isEmpty();
+    }
+
+    @Test
+    void detects_drifting_steady_state() {
+        WarmUpAccumulator accumulator = new WarmUpAccumulator(1);
+        accumulator.add(STEP_DEFINITION_ID, Duration.ofMillis(5).toNanos());
+        for (int i = 1; i <= 10; i++) {
+            accumulator.add(STEP_DEFINITION_ID, Duration.ofMillis(10L * i).toNanos());
+        }
+
+        WarmUp warmUp = accumulator.toWarmUp(STEP_DEFINITION_ID);
+
+        assertThat(warmUp).isNotNull();
+        assertThat(warmUp.getPenalty()).isEqualTo(createDuration(0L, 0));
+        // From 10ms to 100ms with a mean of 55ms
+        assertThat(warmUp.getDrift()).isCloseTo(90.0 / 55.0, within(1e-9));
+        assertThat(warmUp.isDrifting()).isTrue();
+    }
+
+    @Test
+    void ignores_noise() {
+        WarmUpAccumulator accumulator = new WarmUpAccumulator(1);
+        long[] millis = {10, 50, 10, 50, 10, 50, 10, 50, 10, 60};
+        for (long duration : millis) {
+            accumulator.add(STEP_DEFINITION_ID, Duration.ofMillis(duration).toNanos());
+        }
+
+        WarmUp warmUp = accumulator.toWarmUp(STEP_DEFINITION_ID);
+
+        assertThat(warmUp).isNotNull();
+        assertThat(warmUp.isDrifting()).isFalse();
+    }
+
+    @Test
+    void without_steady_state() {
+        WarmUpAccumulator accumulator = new WarmUpAccumulator(3);
+        assertThat(accumulator.toWarmUp(STEP_DEFINITION_ID)).isNull();
+
+        accumulator.add(STEP_DEFINITION_ID, Duration.ofMillis(10).toNanos());
+        WarmUp warmUp = accumulator.toWarmUp(STEP_DEFINITION_ID);
+
+        assertThat(warmUp).isNotNull();
+        assertThat(warmUp.getExecutions()).isEqualTo(1);
+        assertThat(warmUp.getSteadyState()).isEmpty();
+        assertThat(warmUp.getPenalty()).isEqualTo(createDuration(0L, 0));
+    }
+
+    private static io.cucumber.messages.types.Duration createDuration(long seconds, int nanos) {
+        return new io.cucumber.messages.types.Duration(seconds, nanos);
+    }
+}
@@ -0,0 +1,39 @@
+package io.cucumber.usageformatter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import static io.cucumber.usageformatter.MessagesToUsageWriterAcceptanceTest.writeMessages;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WarmUpReportSerializerTest {
+
+    @Test
+    void reports_warm_up_statistics() throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        MessagesToUsageWriter writer = MessagesToUsageWriter.builder()
+                .warmUpExecutions(2)
+                .target(WarmUpReportSerializer.builder()
+                        .removeUriPrefix("samples/")
+                        .build(), text)
+                .target(new JsonReportSerializer(), json)
+                .build();
+
+        writeMessages(Paths.get("../testdata/src/multiple-features.ndjson"), writer);
+
+        assertThat(text.toString(UTF_8))
+                .contains("Warm-up")
+                .contains("Penalty")
+                .contains("an order for {string}")
+                .contains("+0%")
+                .contains(" multiple-features/multiple-features.ts:3");
+        assertThat(json.toString(UTF_8))
+                .contains("\"warmUp\": {")
+                .contains("\"executions\": 2");
+    }
+}
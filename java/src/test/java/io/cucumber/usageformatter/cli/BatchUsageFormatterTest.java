@@ -0,0 +1,181 @@
+package io.cucumber.usageformatter.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static io.cucumber.usageformatter.cli.BatchUsageFormatter.EXIT_BUDGET_EXCEEDED;
+import static io.cucumber.usageformatter.cli.BatchUsageFormatter.EXIT_FAILURE;
+import static io.cucumber.usageformatter.cli.BatchUsageFormatter.EXIT_OK;
+import static io.cucumber.usageformatter.cli.BatchUsageFormatter.EXIT_USAGE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchUsageFormatterTest {
+
+    private static final Path testdata = Paths.get("../testdata/src");
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @TempDir
+    Path temp;
+
+    private int run(String... args) {
+        return BatchUsageFormatter.run(args, new PrintStream(out, true, UTF_8), new PrintStream(err, true, UTF_8));
+    }
+
+    @Test
+    void writes_a_report_per_file() throws IOException {
+        Path input = Files.createDirectories(temp.resolve("input"));
+        Files.copy(testdata.resolve("minimal.ndjson"), input.resolve("minimal.ndjson"));
+        Files.copy(testdata.resolve("multiple-features.ndjson"), input.resolve("multiple-features.ndjson"));
+        Path output = temp.resolve("output");
+
+        int exitCode = run("--threads", "2", "--output-dir", output.toString(), input.toString());
+
+        assertThat(exitCode).isEqualTo(EXIT_OK);
+        assertThat(Files.readString(output.resolve("minimal.step-definitions.txt")))
+                .isEqualToIgnoringNewLines(Files.readString(testdata.resolve("minimal.step-definitions.txt")));
+        assertThat(Files.readString(output.resolve("multiple-features.step-definitions.txt")))
+                .isEqualToIgnoringNewLines(Files.readString(testdata.resolve("multiple-features.step-definitions.txt")));
+        assertThat(err.toString(UTF_8))
+                .contains("[2/2]")
+                .contains("Processed 2 file(s)");
+    }
+
+    @Test
+    void writes_a_combined_report() throws IOException {
+        Path input = Files.createDirectories(temp.resolve("input"));
+        Files.copy(testdata.resolve("multiple-features.ndjson"), input.resolve("first.ndjson"));
+        Files.copy(testdata.resolve("multiple-features.ndjson"), input.resolve("second.ndjson"));
+        Path combined = temp.resolve("combined.json");
+
+        int exitCode = run("--quiet", "--format", "json", "--combined", combined.toString(),
+                input.resolve("first.ndjson").toString(), input.resolve("second.ndjson").toString());
+
+        assertThat(exitCode).isEqualTo(EXIT_OK);
+        assertThat(input.resolve("first.json")).exists();
+        assertThat(input.resolve("second.json")).exists();
+        assertThat(Files.readString(combined)).contains("\"matchCount\": 18");
+        assertThat(err.toString(UTF_8)).isEmpty();
+    }
+
+    @Test
+    void combines_reports_in_input_order() throws IOException {
+        Path input = Files.createDirectories(temp.resolve("input"));
+        Files.copy(testdata.resolve("minimal.ndjson"), input.resolve("a.ndjson"));
+        Files.copy(testdata.resolve("multiple-features.ndjson"), input.resolve("b.ndjson"));
+        Files.copy(testdata.resolve("unused-steps.ndjson"), input.resolve("c.ndjson"));
+        Path sequential = temp.resolve("sequential.txt");
+        Path concurrent = temp.resolve("concurrent.txt");
+
+        assertThat(run("--quiet", "--format", "usage-with-steps", "--max-steps", "1", "--threads", "1",
+                "--combined", sequential.toString(), input.toString())).isEqualTo(EXIT_OK);
+        assertThat(run("--quiet", "--format", "usage-with-steps", "--max-steps", "1", "--threads", "3",
+                "--combined", concurrent.toString(), input.toString())).isEqualTo(EXIT_OK);
+
+        assertThat(Files.readString(concurrent)).isEqualTo(Files.readString(sequential));
+    }
+
+    @Test
+    void does_not_write_reports_of_files_that_failed() throws IOException {
+        Path input = Files.createDirectories(temp.resolve("input"));
+        Files.copy(testdata.resolve("minimal.ndjson"), input.resolve("minimal.ndjson"));
+        List<String> lines = Files.readAllLines(testdata.resolve("multiple-features.ndjson"));
+        List<String> truncated = new ArrayList<>(lines.subList(0, lines.size() / 2));
+        truncated.add("not json");
+        Files.write(input.resolve("truncated.ndjson"), truncated);
+        Path combined = temp.resolve("combined.txt");
+
+        assertThat(run("--quiet", "--combined", combined.toString(), input.toString())).isEqualTo(EXIT_FAILURE);
+
+        assertThat(input.resolve("minimal.step-definitions.txt")).exists();
+        assertThat(input.resolve("truncated.step-definitions.txt")).doesNotExist();
+        assertThat(combined).doesNotExist();
+        try (Stream<Path> files = Files.list(input)) {
+            assertThat(files).noneMatch(file -> file.toString().endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    void writes_other_formats() throws IOException {
+        Path input = temp.resolve("unused-steps.ndjson");
+        Files.copy(testdata.resolve("unused-steps.ndjson"), input);
+
+        assertThat(run("--quiet", "--format", "unused", input.toString())).isEqualTo(EXIT_OK);
+        assertThat(run("--quiet", "--format", "usage-with-steps", "--max-steps", "5", "--remove-uri-prefix", "",
+                input.toString())).isEqualTo(EXIT_OK);
+        assertThat(run("--quiet", "--format", "html", "--remove-uri-prefix", "samples/", input.toString())).isEqualTo(EXIT_OK);
+
+        assertThat(temp.resolve("unused-steps.html")).exists();
+        assertThat(Files.readString(temp.resolve("unused-steps.unused.txt")))
+                .isEqualToIgnoringNewLines(Files.readString(testdata.resolve("unused-steps.unused.txt")));
+        assertThat(Files.readString(temp.resolve("unused-steps.with-steps.txt")))
+                .isEqualToIgnoringNewLines(Files.readString(testdata.resolve("unused-steps.with-steps.txt")));
+    }
+
+    @Test
+    void fails_when_budgets_are_exceeded() throws IOException {
+        Path input = temp.resolve("multiple-features.ndjson");
+        Files.copy(testdata.resolve("multiple-features.ndjson"), input);
+        Path exceeded = Files.writeString(temp.resolve("exceeded.txt"), "sum=5ms pattern=an order for .*");
+        Path withinBudget = Files.writeString(temp.resolve("within-budget.txt"), "mean=1s pattern=an order for .*");
+        Path invalid = Files.writeString(temp.resolve("invalid.txt"), "pattern=an order for .*");
+
+        assertThat(run("--quiet", "--budgets", exceeded.toString(), input.toString())).isEqualTo(EXIT_BUDGET_EXCEEDED);
+        assertThat(out.toString(UTF_8))
+                .contains("1 step definition budget(s) exceeded")
+                .contains("an order for {string}");
+
+        assertThat(run("--budgets", withinBudget.toString(), input.toString())).isEqualTo(EXIT_OK);
+        assertThat(err.toString(UTF_8)).contains("All step definitions are within budget");
+
+        assertThat(run("--budgets", invalid.toString(), input.toString())).isEqualTo(EXIT_FAILURE);
+        assertThat(err.toString(UTF_8)).contains("Invalid budget on line 1");
+    }
+
+    @Test
+    void prints_usage() {
+        assertThat(run("--help")).isEqualTo(EXIT_OK);
+        assertThat(out.toString(UTF_8)).startsWith("Usage: usage-formatter");
+    }
+
+    @Test
+    void rejects_invalid_arguments() {
+        assertThat(run()).isEqualTo(EXIT_USAGE);
+        assertThat(run("--format", "xml", "file.ndjson")).isEqualTo(EXIT_USAGE);
+        assertThat(run("--threads", "0", "file.ndjson")).isEqualTo(EXIT_USAGE);
+        assertThat(run("--threads", "many", "file.ndjson")).isEqualTo(EXIT_USAGE);
+        assertThat(run("--unknown", "file.ndjson")).isEqualTo(EXIT_USAGE);
+        assertThat(run("file.ndjson", "--format")).isEqualTo(EXIT_USAGE);
+        assertThat(err.toString(UTF_8)).contains("Unknown format: xml");
+    }
+
+    @Test
+    void reports_files_that_could_not_be_processed() throws IOException {
+        Path empty = Files.createDirectories(temp.resolve("empty"));
+        assertThat(run(empty.toString())).isEqualTo(EXIT_USAGE);
+        assertThat(run(temp.resolve("missing.txt").toString())).isEqualTo(EXIT_FAILURE);
+
+        Path invalid = Files.writeString(temp.resolve("invalid.ndjson"), "not json");
+        assertThat(run(invalid.toString())).isEqualTo(EXIT_FAILURE);
+        assertThat(err.toString(UTF_8)).contains("Failed to process 1 file(s)");
+    }
+
+    @Test
+    void formats_bytes() {
+        assertThat(BatchUsageFormatter.formatBytes(512)).isEqualTo("512 B");
+        assertThat(BatchUsageFormatter.formatBytes(1536)).isEqualTo("1.5 KiB");
+        assertThat(BatchUsageFormatter.formatBytes(3L * 1024 * 1024 * 1024)).isEqualTo("3.0 GiB");
+    }
+}